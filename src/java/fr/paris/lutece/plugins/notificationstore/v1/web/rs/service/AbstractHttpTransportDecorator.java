@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.hc.client5.http.HttpResponseException;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IAsyncHttpTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreConstants;
+
+/**
+ * Base class of the transports which add a behaviour to another transport : all the requests are delegated to the decorated transport.
+ */
+public abstract class AbstractHttpTransportDecorator implements IAsyncHttpTransportProvider
+{
+    /** endpoint of the urls outside of the NotificationStore resources */
+    private static final String ENDPOINT_OTHER = "*";
+
+    private static final String SEGMENT_ANY = "/*";
+
+    // the resources of the NotificationStore api, and their named endpoints (the other paths of a resource end with an id)
+    private static final Set<String> RESOURCES = new HashSet<>( Arrays.asList( resource( NotificationStoreConstants.PATH_DEMAND ),
+            resource( NotificationStoreConstants.PATH_NOTIFICATION ), resource( NotificationStoreConstants.PATH_CATEGORY ),
+            resource( NotificationStoreConstants.PATH_STATUS ), resource( NotificationStoreConstants.PATH_DEMAND_TYPES ) ) );
+    private static final Set<String> NAMED_ENDPOINTS = new HashSet<>( Arrays.asList( NotificationStoreConstants.PATH_DEMAND_LIST,
+            NotificationStoreConstants.PATH_DEMAND_STATUS, NotificationStoreConstants.PATH_TYPE_DEMAND, NotificationStoreConstants.PATH_NOTIFICATION_LIST,
+            NotificationStoreConstants.PATH_NOTIFICATION + NotificationStoreConstants.PATH_REASSIGN, NotificationStoreConstants.PATH_CATEGORY_LIST,
+            NotificationStoreConstants.PATH_GENERIC_STATUS ) );
+
+    /** decorated transport */
+    protected final IHttpTransportProvider _transport;
+
+    /**
+     * Constructor
+     * 
+     * @param transport
+     *            the decorated transport
+     */
+    protected AbstractHttpTransportDecorator( IHttpTransportProvider transport )
+    {
+        _transport = transport;
+    }
+
+    /**
+     * @return the decorated transport
+     */
+    public IHttpTransportProvider getTransport( )
+    {
+        return _transport;
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doGet( strEndPointUrl, mapParams, mapHeadersRequest );
+    }
+
+    @Override
+    public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doPost( strEndPointUrl, mapParams, mapHeadersRequest );
+    }
+
+    @Override
+    public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doPostJson( strEndPointUrl, json, mapHeadersRequest );
+    }
+
+    @Override
+    public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doPut( strEndPointUrl, mapParams, mapHeadersRequest );
+    }
+
+    @Override
+    public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doPutJson( strEndPointUrl, json, mapHeadersRequest );
+    }
+
+    @Override
+    public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+    {
+        return _transport.doDelete( strEndPointUrl, mapHeadersRequest );
+    }
+
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        return _transport.doGetStream( strEndPointUrl, mapParams, mapHeadersRequest, responseReader );
+    }
+
+    @Override
+    public <T> T doPostJsonStream( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+            throws IOException
+    {
+        return _transport.doPostJsonStream( strEndPointUrl, json, mapHeadersRequest, responseReader );
+    }
+
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        if ( _transport instanceof IAsyncHttpTransportProvider )
+        {
+            return ( (IAsyncHttpTransportProvider) _transport ).doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest );
+        }
+
+        return blockingCall( ( ) -> _transport.doGet( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doPostJsonAsync( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        if ( _transport instanceof IAsyncHttpTransportProvider )
+        {
+            return ( (IAsyncHttpTransportProvider) _transport ).doPostJsonAsync( strEndPointUrl, json, mapHeadersRequest );
+        }
+
+        return blockingCall( ( ) -> _transport.doPostJson( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    /**
+     * run a blocking call of a transport which is not asynchronous, on the caller thread
+     * 
+     * @param call
+     *            the call
+     * @return the future response, completed exceptionally if the call fails
+     */
+    protected static CompletableFuture<String> blockingCall( Supplier<String> call )
+    {
+        CompletableFuture<String> future = new CompletableFuture<>( );
+
+        try
+        {
+            future.complete( call.get( ) );
+        }
+        catch( RuntimeException e )
+        {
+            future.completeExceptionally( e );
+        }
+
+        return future;
+    }
+
+    @Override
+    public void setApiEndPointUrl( String strApiEndPointUrl )
+    {
+        _transport.setApiEndPointUrl( strApiEndPointUrl );
+    }
+
+    @Override
+    public String getApiEndPointUrl( )
+    {
+        return _transport.getApiEndPointUrl( );
+    }
+
+    /**
+     * get the endpoint of a url, from the paths of the NotificationStore api : a named endpoint (demand/list...), or the resource followed by
+     * /* when the path ends with an id (demand/*...), or * for the other urls. The number of endpoints is bounded, whatever the ids.
+     * 
+     * @param strEndPointUrl
+     * @return the endpoint
+     */
+    protected String getEndpoint( String strEndPointUrl )
+    {
+        String strPath = strEndPointUrl;
+        String strApiEndPointUrl = getApiEndPointUrl( );
+
+        if ( strApiEndPointUrl != null && strPath.startsWith( strApiEndPointUrl ) )
+        {
+            strPath = strPath.substring( strApiEndPointUrl.length( ) );
+        }
+        int nQuery = strPath.indexOf( '?' );
+        if ( nQuery >= 0 )
+        {
+            strPath = strPath.substring( 0, nQuery );
+        }
+
+        String [ ] segments = strPath.split( "/" );
+        for ( int i = 0; i < segments.length; i++ )
+        {
+            if ( !RESOURCES.contains( segments [i] ) )
+            {
+                continue;
+            }
+
+            int nNext = i + 1;
+            while ( nNext < segments.length && segments [nNext].isEmpty( ) )
+            {
+                nNext++;
+            }
+            if ( nNext == segments.length )
+            {
+                return segments [i];
+            }
+
+            String strEndpoint = segments [i] + '/' + segments [nNext];
+            return NAMED_ENDPOINTS.contains( strEndpoint ) ? strEndpoint : segments [i] + SEGMENT_ANY;
+        }
+
+        return ENDPOINT_OTHER;
+    }
+
+    /**
+     * @param strPath
+     *            the path of a resource, ending with /
+     * @return the name of the resource
+     */
+    private static String resource( String strPath )
+    {
+        return strPath.endsWith( "/" ) ? strPath.substring( 0, strPath.length( ) - 1 ) : strPath;
+    }
+
+    /**
+     * @param exception
+     *            the failure of a call (null if it succeeded)
+     * @return true if the failure comes from the server or the network (4xx responses, exceeded deadlines, cancelled calls and the
+     *         calls rejected by a decorator don't)
+     */
+    protected static boolean isServerFailure( Throwable exception )
+    {
+        Throwable cause = exception;
+        while ( cause != null )
+        {
+            if ( cause instanceof DeadlineExceededException )
+            {
+                // the deadline of the caller was too short
+                return false;
+            }
+            if ( cause instanceof CircuitBreakerOpenException || cause instanceof ConcurrencyLimitException || cause instanceof CancellationException )
+            {
+                // the request was not sent, or abandoned by the caller
+                return false;
+            }
+            if ( cause instanceof HttpTransportException && ( (HttpTransportException) cause ).getStatusCode( ) > 0 )
+            {
+                return ( (HttpTransportException) cause ).getStatusCode( ) >= 500;
+            }
+            if ( cause instanceof HttpResponseException )
+            {
+                return ( (HttpResponseException) cause ).getStatusCode( ) >= 500;
+            }
+            cause = cause.getCause( );
+        }
+
+        return exception != null;
+    }
+}
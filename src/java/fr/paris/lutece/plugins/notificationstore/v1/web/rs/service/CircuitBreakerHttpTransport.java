@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+
+/**
+ * Transport with a circuit breaker per endpoint (path of the url, ids excluded).
+ * When the rate of failed or slow calls of the last calls of an endpoint exceeds a threshold, the circuit opens :
+ * the requests to this endpoint fail immediately with a CircuitBreakerOpenException. After a wait, a few probe requests
+ * are let through (half-open state) : the circuit closes if they succeed, and opens again otherwise.
+ * The 4xx responses are not counted as failures.
+ */
+public class CircuitBreakerHttpTransport extends AbstractHttpTransportDecorator
+{
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    public static final long DEFAULT_SLOW_CALL_DURATION = 5000;
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private static Logger _logger = Logger.getLogger( CircuitBreakerHttpTransport.class );
+
+    private int _nWindowSize = DEFAULT_WINDOW_SIZE;
+    private int _nMinimumCalls = DEFAULT_MINIMUM_CALLS;
+    private int _nFailureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private int _nSlowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+    private long _lSlowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+    private long _lOpenDuration = DEFAULT_OPEN_DURATION;
+    private int _nHalfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+    private final Map<String, CircuitBreaker> _mapBreakers = new ConcurrentHashMap<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param transport
+     *            the decorated transport
+     */
+    public CircuitBreakerHttpTransport( IHttpTransportProvider transport )
+    {
+        super( transport );
+    }
+
+    /**
+     * set the number of last calls of an endpoint used to compute the failure and slow call rates
+     * 
+     * @param nWindowSize
+     */
+    public void setWindowSize( int nWindowSize )
+    {
+        _nWindowSize = nWindowSize;
+    }
+
+    /**
+     * set the min number of calls of an endpoint before its circuit can open
+     * 
+     * @param nMinimumCalls
+     */
+    public void setMinimumCalls( int nMinimumCalls )
+    {
+        _nMinimumCalls = nMinimumCalls;
+    }
+
+    /**
+     * set the failure rate (in %) which opens the circuit
+     * 
+     * @param nFailureRateThreshold
+     */
+    public void setFailureRateThreshold( int nFailureRateThreshold )
+    {
+        _nFailureRateThreshold = nFailureRateThreshold;
+    }
+
+    /**
+     * set the slow call rate (in %) which opens the circuit
+     * 
+     * @param nSlowCallRateThreshold
+     */
+    public void setSlowCallRateThreshold( int nSlowCallRateThreshold )
+    {
+        _nSlowCallRateThreshold = nSlowCallRateThreshold;
+    }
+
+    /**
+     * set the duration (in milliseconds) above which a call is slow
+     * 
+     * @param lSlowCallDuration
+     */
+    public void setSlowCallDuration( long lSlowCallDuration )
+    {
+        _lSlowCallDuration = lSlowCallDuration;
+    }
+
+    /**
+     * set the time (in milliseconds) the circuit stays open before the probe requests
+     * 
+     * @param lOpenDuration
+     */
+    public void setOpenDuration( long lOpenDuration )
+    {
+        _lOpenDuration = lOpenDuration;
+    }
+
+    /**
+     * set the number of probe requests in half-open state
+     * 
+     * @param nHalfOpenCalls
+     */
+    public void setHalfOpenCalls( int nHalfOpenCalls )
+    {
+        _nHalfOpenCalls = nHalfOpenCalls;
+    }
+
+    /**
+     * @return the state (CLOSED, OPEN, HALF_OPEN) of the circuit of each endpoint
+     */
+    public Map<String, String> getStates( )
+    {
+        Map<String, String> mapStates = new TreeMap<>( );
+
+        for ( Map.Entry<String, CircuitBreaker> breaker : _mapBreakers.entrySet( ) )
+        {
+            mapStates.put( breaker.getKey( ), breaker.getValue( ).getState( ).name( ) );
+        }
+
+        return mapStates;
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doGet( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPost( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPostJson( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPut( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPutJson( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doDelete( strEndPointUrl, mapHeadersRequest ) );
+    }
+
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        return execute( strEndPointUrl, ( ) -> super.doGetStream( strEndPointUrl, mapParams, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public <T> T doPostJsonStream( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+            throws IOException
+    {
+        return execute( strEndPointUrl, ( ) -> super.doPostJsonStream( strEndPointUrl, json, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        CircuitBreaker breaker = getBreaker( strEndPointUrl );
+        if ( !breaker.tryAcquire( ) )
+        {
+            return rejected( strEndPointUrl );
+        }
+
+        long lStart = System.currentTimeMillis( );
+
+        return super.doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest )
+                .whenComplete( ( strResponse, exception ) -> onAsyncResult( breaker, lStart, exception ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doPostJsonAsync( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        CircuitBreaker breaker = getBreaker( strEndPointUrl );
+        if ( !breaker.tryAcquire( ) )
+        {
+            return rejected( strEndPointUrl );
+        }
+
+        long lStart = System.currentTimeMillis( );
+
+        return super.doPostJsonAsync( strEndPointUrl, json, mapHeadersRequest )
+                .whenComplete( ( strResponse, exception ) -> onAsyncResult( breaker, lStart, exception ) );
+    }
+
+    /**
+     * record the outcome of a non-blocking call : a cancelled call is not counted
+     * 
+     * @param breaker
+     * @param lStart
+     * @param exception
+     */
+    private static void onAsyncResult( CircuitBreaker breaker, long lStart, Throwable exception )
+    {
+        if ( exception instanceof CancellationException || ( exception instanceof CompletionException && exception.getCause( ) instanceof CancellationException ) )
+        {
+            breaker.onCancelled( );
+        }
+        else
+        {
+            breaker.onResult( System.currentTimeMillis( ) - lStart, isServerFailure( exception ) );
+        }
+    }
+
+    /**
+     * execute a call through the circuit breaker of its endpoint
+     * 
+     * @param strEndPointUrl
+     * @param call
+     * @return the result of the call
+     * @throws IOException
+     */
+    private <T> T execute( String strEndPointUrl, Call<T> call ) throws IOException
+    {
+        CircuitBreaker breaker = getBreaker( strEndPointUrl );
+        if ( !breaker.tryAcquire( ) )
+        {
+            throw new CircuitBreakerOpenException( getEndpoint( strEndPointUrl ) );
+        }
+
+        long lStart = System.currentTimeMillis( );
+        Throwable failure = null;
+        try
+        {
+            return call.call( );
+        }
+        catch( IOException | RuntimeException | Error e )
+        {
+            failure = e;
+            throw e;
+        }
+        finally
+        {
+            breaker.onResult( System.currentTimeMillis( ) - lStart, isServerFailure( failure ) );
+        }
+    }
+
+    /**
+     * execute a call which doesn't throw IOException through the circuit breaker of its endpoint
+     * 
+     * @param strEndPointUrl
+     * @param call
+     * @return the result of the call
+     */
+    private <T> T executeUnchecked( String strEndPointUrl, Call<T> call )
+    {
+        try
+        {
+            return execute( strEndPointUrl, call );
+        }
+        catch( IOException e )
+        {
+            throw new HttpTransportException( e.getMessage( ), 0, 1, e );
+        }
+    }
+
+    /**
+     * @param strEndPointUrl
+     * @return a future failed with a CircuitBreakerOpenException
+     */
+    private CompletableFuture<String> rejected( String strEndPointUrl )
+    {
+        CompletableFuture<String> future = new CompletableFuture<>( );
+        future.completeExceptionally( new CircuitBreakerOpenException( getEndpoint( strEndPointUrl ) ) );
+
+        return future;
+    }
+
+    /**
+     * @param strEndPointUrl
+     * @return the circuit breaker of the endpoint of the url
+     */
+    private CircuitBreaker getBreaker( String strEndPointUrl )
+    {
+        return _mapBreakers.computeIfAbsent( getEndpoint( strEndPointUrl ), strEndpoint -> new CircuitBreaker( strEndpoint ) );
+    }
+
+    /**
+     * State of a circuit
+     */
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Circuit breaker of an endpoint : the outcomes of the last calls are kept in a ring buffer
+     */
+    private final class CircuitBreaker
+    {
+        private final String _strEndpoint;
+        private final boolean [ ] _failures = new boolean [ _nWindowSize];
+        private final boolean [ ] _slowCalls = new boolean [ _nWindowSize];
+        private int _nCalls;
+        private int _nPosition;
+        private int _nFailureCount;
+        private int _nSlowCallCount;
+
+        private State _state = State.CLOSED;
+        private long _lOpenedAt;
+        private int _nHalfOpenStarted;
+        private int _nHalfOpenCompleted;
+
+        CircuitBreaker( String strEndpoint )
+        {
+            _strEndpoint = strEndpoint;
+        }
+
+        synchronized State getState( )
+        {
+            return _state;
+        }
+
+        /**
+         * @return true if the call can be sent
+         */
+        synchronized boolean tryAcquire( )
+        {
+            if ( _state == State.OPEN )
+            {
+                if ( System.currentTimeMillis( ) - _lOpenedAt < _lOpenDuration )
+                {
+                    return false;
+                }
+                _state = State.HALF_OPEN;
+                _nHalfOpenStarted = 0;
+                _nHalfOpenCompleted = 0;
+                _logger.info( "LibraryNotificationstore - circuit breaker half-open for endpoint " + _strEndpoint );
+            }
+
+            if ( _state == State.HALF_OPEN )
+            {
+                if ( _nHalfOpenStarted >= _nHalfOpenCalls )
+                {
+                    return false;
+                }
+                _nHalfOpenStarted++;
+            }
+
+            return true;
+        }
+
+        /**
+         * record the outcome of a call
+         * 
+         * @param lDuration
+         * @param bFailure
+         */
+        synchronized void onResult( long lDuration, boolean bFailure )
+        {
+            boolean bSlow = lDuration >= _lSlowCallDuration;
+
+            if ( _state == State.HALF_OPEN )
+            {
+                if ( bFailure || bSlow )
+                {
+                    open( );
+                }
+                else if ( ++_nHalfOpenCompleted >= _nHalfOpenCalls )
+                {
+                    close( );
+                }
+                return;
+            }
+
+            if ( _state == State.OPEN )
+            {
+                // call started before the circuit opened
+                return;
+            }
+
+            if ( _nCalls == _failures.length )
+            {
+                _nFailureCount -= _failures [_nPosition] ? 1 : 0;
+                _nSlowCallCount -= _slowCalls [_nPosition] ? 1 : 0;
+            }
+            else
+            {
+                _nCalls++;
+            }
+            _failures [_nPosition] = bFailure;
+            _slowCalls [_nPosition] = bSlow;
+            _nFailureCount += bFailure ? 1 : 0;
+            _nSlowCallCount += bSlow ? 1 : 0;
+            _nPosition = ( _nPosition + 1 ) % _failures.length;
+
+            if ( _nCalls >= _nMinimumCalls
+                    && ( _nFailureCount * 100 >= _nFailureRateThreshold * _nCalls || _nSlowCallCount * 100 >= _nSlowCallRateThreshold * _nCalls ) )
+            {
+                open( );
+            }
+        }
+
+        /**
+         * release the probe slot of a cancelled call
+         */
+        synchronized void onCancelled( )
+        {
+            if ( _state == State.HALF_OPEN && _nHalfOpenStarted > _nHalfOpenCompleted )
+            {
+                _nHalfOpenStarted--;
+            }
+        }
+
+        private void open( )
+        {
+            _state = State.OPEN;
+            _lOpenedAt = System.currentTimeMillis( );
+            _logger.warn( "LibraryNotificationstore - circuit breaker open for endpoint " + _strEndpoint );
+        }
+
+        private void close( )
+        {
+            _state = State.CLOSED;
+            _nCalls = 0;
+            _nPosition = 0;
+            _nFailureCount = 0;
+            _nSlowCallCount = 0;
+            _logger.info( "LibraryNotificationstore - circuit breaker closed for endpoint " + _strEndpoint );
+        }
+    }
+
+    /**
+     * A call which can throw an IOException
+     */
+    @FunctionalInterface
+    private interface Call<T>
+    {
+        T call( ) throws IOException;
+    }
+}
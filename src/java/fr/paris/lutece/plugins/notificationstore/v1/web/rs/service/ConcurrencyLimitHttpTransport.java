@@ -0,0 +1,607 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.CallDeadline;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+
+/**
+ * Transport which bounds the number of concurrent calls to each endpoint (path of the url, ids excluded).
+ * The limit adapts to the observed latency (AIMD) : it grows by one per limit of successful calls, and decreases
+ * by the decrease ratio when a call fails or is slower than the latency threshold.
+ * The calls over the limit wait in a bounded queue, at most maxWait milliseconds, and are rejected with a ConcurrencyLimitException otherwise.
+ */
+public class ConcurrencyLimitHttpTransport extends AbstractHttpTransportDecorator
+{
+    public static final int DEFAULT_INITIAL_LIMIT = 10;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 100;
+    public static final long DEFAULT_LATENCY_THRESHOLD = 1000;
+    public static final double DEFAULT_DECREASE_RATIO = 0.9;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 50;
+    public static final long DEFAULT_MAX_WAIT = 1000;
+
+    private int _nInitialLimit = DEFAULT_INITIAL_LIMIT;
+    private int _nMinLimit = DEFAULT_MIN_LIMIT;
+    private int _nMaxLimit = DEFAULT_MAX_LIMIT;
+    private long _lLatencyThreshold = DEFAULT_LATENCY_THRESHOLD;
+    private double _dDecreaseRatio = DEFAULT_DECREASE_RATIO;
+    private int _nMaxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private long _lMaxWait = DEFAULT_MAX_WAIT;
+
+    private final Map<String, Limiter> _mapLimiters = new ConcurrentHashMap<>( );
+    private final AtomicLong _rejectedCount = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param transport
+     *            the decorated transport
+     */
+    public ConcurrencyLimitHttpTransport( IHttpTransportProvider transport )
+    {
+        super( transport );
+    }
+
+    /**
+     * set the initial concurrency limit of each endpoint
+     * 
+     * @param nInitialLimit
+     */
+    public void setInitialLimit( int nInitialLimit )
+    {
+        _nInitialLimit = nInitialLimit;
+    }
+
+    /**
+     * set the min concurrency limit of each endpoint
+     * 
+     * @param nMinLimit
+     */
+    public void setMinLimit( int nMinLimit )
+    {
+        _nMinLimit = nMinLimit;
+    }
+
+    /**
+     * set the max concurrency limit of each endpoint
+     * 
+     * @param nMaxLimit
+     */
+    public void setMaxLimit( int nMaxLimit )
+    {
+        _nMaxLimit = nMaxLimit;
+    }
+
+    /**
+     * set the latency (in milliseconds) above which the limit decreases
+     * 
+     * @param lLatencyThreshold
+     */
+    public void setLatencyThreshold( long lLatencyThreshold )
+    {
+        _lLatencyThreshold = lLatencyThreshold;
+    }
+
+    /**
+     * set the factor applied to the limit when a call fails or is slow
+     * 
+     * @param dDecreaseRatio
+     */
+    public void setDecreaseRatio( double dDecreaseRatio )
+    {
+        _dDecreaseRatio = dDecreaseRatio;
+    }
+
+    /**
+     * set the max number of calls waiting for each endpoint
+     * 
+     * @param nMaxQueueSize
+     */
+    public void setMaxQueueSize( int nMaxQueueSize )
+    {
+        _nMaxQueueSize = nMaxQueueSize;
+    }
+
+    /**
+     * set the max wait (in milliseconds) of a blocking call
+     * 
+     * @param lMaxWait
+     */
+    public void setMaxWait( long lMaxWait )
+    {
+        _lMaxWait = lMaxWait;
+    }
+
+    /**
+     * @return the current concurrency limit of each endpoint
+     */
+    public Map<String, Integer> getLimits( )
+    {
+        Map<String, Integer> mapLimits = new TreeMap<>( );
+        _mapLimiters.forEach( ( strEndpoint, limiter ) -> mapLimits.put( strEndpoint, limiter.getLimit( ) ) );
+
+        return mapLimits;
+    }
+
+    /**
+     * @return the number of calls in flight of each endpoint
+     */
+    public Map<String, Integer> getInFlight( )
+    {
+        Map<String, Integer> mapInFlight = new TreeMap<>( );
+        _mapLimiters.forEach( ( strEndpoint, limiter ) -> mapInFlight.put( strEndpoint, limiter.getInFlight( ) ) );
+
+        return mapInFlight;
+    }
+
+    /**
+     * @return the number of calls waiting for each endpoint
+     */
+    public Map<String, Integer> getQueueDepths( )
+    {
+        Map<String, Integer> mapQueueDepths = new TreeMap<>( );
+        _mapLimiters.forEach( ( strEndpoint, limiter ) -> mapQueueDepths.put( strEndpoint, limiter.getQueueDepth( ) ) );
+
+        return mapQueueDepths;
+    }
+
+    /**
+     * @return the number of rejected calls
+     */
+    public long getRejectedCount( )
+    {
+        return _rejectedCount.get( );
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doGet( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPost( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPostJson( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPut( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doPutJson( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    @Override
+    public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+    {
+        return executeUnchecked( strEndPointUrl, ( ) -> super.doDelete( strEndPointUrl, mapHeadersRequest ) );
+    }
+
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        return execute( strEndPointUrl, ( ) -> super.doGetStream( strEndPointUrl, mapParams, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public <T> T doPostJsonStream( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+            throws IOException
+    {
+        return execute( strEndPointUrl, ( ) -> super.doPostJsonStream( strEndPointUrl, json, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        return executeAsync( strEndPointUrl, ( ) -> super.doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doPostJsonAsync( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        return executeAsync( strEndPointUrl, ( ) -> super.doPostJsonAsync( strEndPointUrl, json, mapHeadersRequest ) );
+    }
+
+    /**
+     * execute a call within the concurrency limit of its endpoint
+     * 
+     * @param strEndPointUrl
+     * @param call
+     * @return the result of the call
+     * @throws IOException
+     */
+    private <T> T execute( String strEndPointUrl, Call<T> call ) throws IOException
+    {
+        Limiter limiter = getLimiter( strEndPointUrl );
+
+        try
+        {
+            if ( !limiter.acquire( ) )
+            {
+                _rejectedCount.incrementAndGet( );
+                CallDeadline deadline = CallDeadline.current( );
+                if ( deadline != null && deadline.isExpired( ) )
+                {
+                    throw new DeadlineExceededException( "Waiting for endpoint " + limiter._strEndpoint, deadline.getTimeout( ), 0, null );
+                }
+                throw new ConcurrencyLimitException( limiter._strEndpoint );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new HttpTransportException( "Interrupted while waiting for endpoint " + limiter._strEndpoint, 0, 0, e );
+        }
+
+        long lStart = System.currentTimeMillis( );
+        Throwable failure = null;
+        try
+        {
+            return call.call( );
+        }
+        catch( IOException | RuntimeException | Error e )
+        {
+            failure = e;
+            throw e;
+        }
+        finally
+        {
+            limiter.release( System.currentTimeMillis( ) - lStart, isServerFailure( failure ) );
+        }
+    }
+
+    /**
+     * execute a call which doesn't throw IOException within the concurrency limit of its endpoint
+     * 
+     * @param strEndPointUrl
+     * @param call
+     * @return the result of the call
+     */
+    private <T> T executeUnchecked( String strEndPointUrl, Call<T> call )
+    {
+        try
+        {
+            return execute( strEndPointUrl, call );
+        }
+        catch( IOException e )
+        {
+            throw new HttpTransportException( e.getMessage( ), 0, 1, e );
+        }
+    }
+
+    /**
+     * execute a non-blocking call within the concurrency limit of its endpoint : the call is sent when a slot is free
+     * 
+     * @param strEndPointUrl
+     * @param call
+     * @return the future response
+     */
+    private CompletableFuture<String> executeAsync( String strEndPointUrl, Supplier<CompletableFuture<String>> call )
+    {
+        Limiter limiter = getLimiter( strEndPointUrl );
+        CompletableFuture<Void> slot = limiter.acquireAsync( );
+
+        if ( slot == null )
+        {
+            _rejectedCount.incrementAndGet( );
+            CompletableFuture<String> rejected = new CompletableFuture<>( );
+            rejected.completeExceptionally( new ConcurrencyLimitException( limiter._strEndpoint ) );
+            return rejected;
+        }
+
+        CompletableFuture<String> futureResponse = new CompletableFuture<>( );
+
+        slot.whenComplete( ( v, slotException ) -> {
+            if ( slotException != null )
+            {
+                // the call gave up its place in the queue : no slot was granted
+                return;
+            }
+            if ( futureResponse.isDone( ) )
+            {
+                // the call was cancelled while its slot was granted
+                limiter.releaseSlot( );
+                return;
+            }
+            send( limiter, call, futureResponse );
+        } );
+
+        // a call cancelled while waiting gives up its place in the queue
+        futureResponse.whenComplete( ( strResponse, exception ) -> {
+            if ( futureResponse.isCancelled( ) )
+            {
+                limiter.abandon( slot );
+            }
+        } );
+
+        return futureResponse;
+    }
+
+    /**
+     * send a non-blocking call which holds a slot of the limiter, and release the slot when the call completes
+     * 
+     * @param limiter
+     * @param call
+     * @param futureResponse
+     *            the future returned to the caller, cancelling it aborts the call
+     */
+    private void send( Limiter limiter, Supplier<CompletableFuture<String>> call, CompletableFuture<String> futureResponse )
+    {
+        long lStart = System.currentTimeMillis( );
+        CompletableFuture<String> futureCall;
+
+        try
+        {
+            futureCall = call.get( );
+        }
+        catch( RuntimeException | Error e )
+        {
+            limiter.release( System.currentTimeMillis( ) - lStart, isServerFailure( e ) );
+            futureResponse.completeExceptionally( e );
+            return;
+        }
+
+        futureCall.whenComplete( ( strResponse, exception ) -> {
+            limiter.release( System.currentTimeMillis( ) - lStart, isServerFailure( exception ) );
+
+            if ( exception != null )
+            {
+                futureResponse.completeExceptionally( exception );
+            }
+            else
+            {
+                futureResponse.complete( strResponse );
+            }
+        } );
+
+        futureResponse.whenComplete( ( strResponse, exception ) -> {
+            if ( futureResponse.isCancelled( ) )
+            {
+                futureCall.cancel( true );
+            }
+        } );
+    }
+
+    /**
+     * @param strEndPointUrl
+     * @return the limiter of the endpoint of the url
+     */
+    private Limiter getLimiter( String strEndPointUrl )
+    {
+        return _mapLimiters.computeIfAbsent( getEndpoint( strEndPointUrl ), Limiter::new );
+    }
+
+    /**
+     * AIMD concurrency limiter of an endpoint
+     */
+    private final class Limiter
+    {
+        private final String _strEndpoint;
+        private double _dLimit = _nInitialLimit;
+        private long _lLastDecrease;
+        private int _nInFlight;
+        private int _nWaiting;
+        private final Deque<CompletableFuture<Void>> _asyncWaiters = new ArrayDeque<>( );
+
+        Limiter( String strEndpoint )
+        {
+            _strEndpoint = strEndpoint;
+        }
+
+        synchronized int getLimit( )
+        {
+            return (int) _dLimit;
+        }
+
+        synchronized int getInFlight( )
+        {
+            return _nInFlight;
+        }
+
+        synchronized int getQueueDepth( )
+        {
+            return _nWaiting + _asyncWaiters.size( );
+        }
+
+        /**
+         * wait for a slot, at most maxWait (or the remaining time of the call deadline, if it is sooner)
+         * 
+         * @return false if the call is rejected
+         * @throws InterruptedException
+         */
+        synchronized boolean acquire( ) throws InterruptedException
+        {
+            if ( _nInFlight < (int) _dLimit && getQueueDepth( ) == 0 )
+            {
+                _nInFlight++;
+                return true;
+            }
+            if ( getQueueDepth( ) >= _nMaxQueueSize )
+            {
+                return false;
+            }
+
+            long lDeadline = System.currentTimeMillis( ) + CallDeadline.getRemaining( _lMaxWait );
+            _nWaiting++;
+            try
+            {
+                while ( _nInFlight >= (int) _dLimit )
+                {
+                    long lRemaining = lDeadline - System.currentTimeMillis( );
+                    if ( lRemaining <= 0 )
+                    {
+                        return false;
+                    }
+                    wait( lRemaining );
+                }
+                _nInFlight++;
+
+                return true;
+            }
+            finally
+            {
+                _nWaiting--;
+            }
+        }
+
+        /**
+         * get a slot without blocking
+         * 
+         * @return a future completed when the slot is granted, or null if the call is rejected
+         */
+        synchronized CompletableFuture<Void> acquireAsync( )
+        {
+            if ( _nInFlight < (int) _dLimit && getQueueDepth( ) == 0 )
+            {
+                _nInFlight++;
+                return CompletableFuture.completedFuture( null );
+            }
+            if ( getQueueDepth( ) >= _nMaxQueueSize )
+            {
+                return null;
+            }
+
+            CompletableFuture<Void> slot = new CompletableFuture<>( );
+            _asyncWaiters.add( slot );
+
+            return slot;
+        }
+
+        /**
+         * adapt the limit to the outcome of a call, and release its slot.
+         * The limit is decreased once for the calls which were in flight together : a call started before the last decrease
+         * doesn't decrease it again.
+         * 
+         * @param lLatency
+         * @param bFailure
+         */
+        void release( long lLatency, boolean bFailure )
+        {
+            synchronized( this )
+            {
+                if ( bFailure || lLatency > _lLatencyThreshold )
+                {
+                    long lNow = System.currentTimeMillis( );
+                    if ( lNow - lLatency >= _lLastDecrease )
+                    {
+                        _dLimit = Math.max( _nMinLimit, _dLimit * _dDecreaseRatio );
+                        _lLastDecrease = lNow;
+                    }
+                }
+                else if ( _nInFlight * 2 >= _dLimit )
+                {
+                    // only grow a limit which is used
+                    _dLimit = Math.min( _nMaxLimit, _dLimit + 1 / _dLimit );
+                }
+            }
+
+            releaseSlot( );
+        }
+
+        /**
+         * remove a cancelled async call from the queue. A slot already granted is released by its call.
+         * 
+         * @param slot
+         */
+        synchronized void abandon( CompletableFuture<Void> slot )
+        {
+            if ( _asyncWaiters.remove( slot ) )
+            {
+                slot.cancel( false );
+            }
+        }
+
+        /**
+         * release a slot and grant the free slots to the waiting calls
+         */
+        void releaseSlot( )
+        {
+            List<CompletableFuture<Void>> listGranted = new ArrayList<>( );
+
+            synchronized( this )
+            {
+                _nInFlight--;
+
+                while ( _nInFlight < (int) _dLimit && !_asyncWaiters.isEmpty( ) )
+                {
+                    _nInFlight++;
+                    listGranted.add( _asyncWaiters.poll( ) );
+                }
+                notifyAll( );
+            }
+
+            // the async calls are sent outside of the lock
+            for ( CompletableFuture<Void> slot : listGranted )
+            {
+                slot.complete( null );
+            }
+        }
+    }
+
+    /**
+     * A call which can throw an IOException
+     */
+    @FunctionalInterface
+    private interface Call<T>
+    {
+        T call( ) throws IOException;
+    }
+}
@@ -0,0 +1,652 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.CallDeadline;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+
+/**
+ * Transport which hedges the GET requests : when no response is received after a delay (a percentile of the recent latencies of the endpoint),
+ * an identical request is sent, to the same end point or to the hedge end point, and the first successful response is used.
+ * The other request is cancelled. The hedged requests are limited by a budget (percentage of the requests).
+ * The blocking requests run on a bounded pool of threads : when all of them are busy, the request is sent by the caller, without hedge.
+ */
+public class HedgingHttpTransport extends AbstractHttpTransportDecorator
+{
+    public static final int DEFAULT_PERCENTILE = 95;
+    public static final long DEFAULT_INITIAL_DELAY = 500;
+    public static final long DEFAULT_MIN_DELAY = 20;
+    public static final double DEFAULT_BUDGET_PERCENT = 10;
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+    public static final int DEFAULT_MAX_THREADS = 50;
+
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_BUDGET_TOKENS = 10;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger( );
+
+    private int _nPercentile = DEFAULT_PERCENTILE;
+    private long _lInitialDelay = DEFAULT_INITIAL_DELAY;
+    private long _lMinDelay = DEFAULT_MIN_DELAY;
+    private double _dBudgetPercent = DEFAULT_BUDGET_PERCENT;
+    private int _nSampleSize = DEFAULT_SAMPLE_SIZE;
+    private String _strHedgeEndPointUrl;
+
+    private final Map<String, LatencyWindow> _mapLatencies = new ConcurrentHashMap<>( );
+    private double _dBudgetTokens = MAX_BUDGET_TOKENS;
+    private final AtomicLong _requestCount = new AtomicLong( );
+    private final AtomicLong _hedgedCount = new AtomicLong( );
+    private final AtomicLong _hedgeWinCount = new AtomicLong( );
+
+    private final ThreadPoolExecutor _executor = new ThreadPoolExecutor( 0, DEFAULT_MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>( ),
+            runnable -> {
+                Thread thread = new Thread( runnable, "notificationstore-hedge-" + THREAD_COUNTER.incrementAndGet( ) );
+                thread.setDaemon( true );
+                return thread;
+            } );
+    private final ScheduledExecutorService _scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        Thread thread = new Thread( runnable, "notificationstore-hedge-scheduler" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    /**
+     * Constructor
+     * 
+     * @param transport
+     *            the decorated transport
+     */
+    public HedgingHttpTransport( IHttpTransportProvider transport )
+    {
+        super( transport );
+    }
+
+    /**
+     * set the percentile of the recent latencies of an endpoint after which a request is hedged
+     * 
+     * @param nPercentile
+     */
+    public void setPercentile( int nPercentile )
+    {
+        _nPercentile = nPercentile;
+    }
+
+    /**
+     * set the hedge delay (in milliseconds) used until enough latencies of the endpoint are known
+     * 
+     * @param lInitialDelay
+     */
+    public void setInitialDelay( long lInitialDelay )
+    {
+        _lInitialDelay = lInitialDelay;
+    }
+
+    /**
+     * set the min hedge delay (in milliseconds)
+     * 
+     * @param lMinDelay
+     */
+    public void setMinDelay( long lMinDelay )
+    {
+        _lMinDelay = lMinDelay;
+    }
+
+    /**
+     * set the max percentage of hedged requests
+     * 
+     * @param dBudgetPercent
+     */
+    public void setBudgetPercent( double dBudgetPercent )
+    {
+        _dBudgetPercent = dBudgetPercent;
+    }
+
+    /**
+     * set the number of recent latencies kept for each endpoint
+     * 
+     * @param nSampleSize
+     */
+    public void setSampleSize( int nSampleSize )
+    {
+        _nSampleSize = nSampleSize;
+    }
+
+    /**
+     * set the max number of threads running the blocking requests and their hedges
+     * 
+     * @param nMaxThreads
+     */
+    public void setMaxThreads( int nMaxThreads )
+    {
+        _executor.setMaximumPoolSize( nMaxThreads );
+    }
+
+    /**
+     * set the end point of the hedged requests (by default, the api end point)
+     * 
+     * @param strHedgeEndPointUrl
+     */
+    public void setHedgeEndPointUrl( String strHedgeEndPointUrl )
+    {
+        _strHedgeEndPointUrl = strHedgeEndPointUrl;
+    }
+
+    /**
+     * @return the number of GET requests
+     */
+    public long getRequestCount( )
+    {
+        return _requestCount.get( );
+    }
+
+    /**
+     * @return the number of hedged requests sent
+     */
+    public long getHedgedCount( )
+    {
+        return _hedgedCount.get( );
+    }
+
+    /**
+     * @return the number of hedged requests which answered first
+     */
+    public long getHedgeWinCount( )
+    {
+        return _hedgeWinCount.get( );
+    }
+
+    /**
+     * stop the threads of the hedged requests
+     */
+    public void shutdown( )
+    {
+        _scheduler.shutdownNow( );
+        _executor.shutdownNow( );
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        try
+        {
+            return hedge( strEndPointUrl, strUrl -> super.doGet( strUrl, mapParams, mapHeadersRequest ) );
+        }
+        catch( IOException e )
+        {
+            throw new HttpTransportException( e.getMessage( ), 0, 1, e );
+        }
+    }
+
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        return hedge( strEndPointUrl, strUrl -> super.doGetStream( strUrl, mapParams, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        _requestCount.incrementAndGet( );
+        addBudget( );
+
+        LatencyWindow latencies = getLatencies( strEndPointUrl );
+        Attempts<String> attempts = new Attempts<>( );
+        CompletableFuture<String> result = attempts._result;
+
+        CompletableFuture<String> primary = timed( latencies, ( ) -> super.doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest ) );
+        // the hedged request is sent by the scheduler, with the deadline of the call
+        Callable<CompletableFuture<String>> hedgeCall = CallDeadline
+                .propagate( ( ) -> super.doGetAsync( hedgeUrl( strEndPointUrl ), mapParams, mapHeadersRequest ) );
+        AtomicReference<CompletableFuture<String>> hedged = new AtomicReference<>( );
+        forward( primary, attempts, false );
+
+        ScheduledFuture<?> hedgeTask = _scheduler.schedule( ( ) -> {
+            if ( !result.isDone( ) && tryConsumeBudget( ) )
+            {
+                if ( attempts.add( ) )
+                {
+                    _hedgedCount.incrementAndGet( );
+                    CompletableFuture<String> hedge = timed( latencies, hedgeCall );
+                    hedged.set( hedge );
+                    forward( hedge, attempts, true );
+                    if ( result.isDone( ) )
+                    {
+                        hedge.cancel( true );
+                    }
+                }
+                else
+                {
+                    refundBudget( );
+                }
+            }
+        }, latencies.getHedgeDelay( ), TimeUnit.MILLISECONDS );
+
+        // the first response wins, the other request is cancelled (the futures of the requests themselves, which abort the exchanges)
+        result.whenComplete( ( strResponse, exception ) -> {
+            hedgeTask.cancel( false );
+            primary.cancel( true );
+            CompletableFuture<String> hedge = hedged.get( );
+            if ( hedge != null )
+            {
+                hedge.cancel( true );
+            }
+        } );
+
+        return result;
+    }
+
+    /**
+     * execute a blocking GET, hedged if it is slow
+     * 
+     * @param strEndPointUrl
+     * @param call
+     *            the call of the url
+     * @return the first successful result
+     * @throws IOException
+     */
+    private <T> T hedge( String strEndPointUrl, UrlCall<T> call ) throws IOException
+    {
+        _requestCount.incrementAndGet( );
+        addBudget( );
+
+        LatencyWindow latencies = getLatencies( strEndPointUrl );
+        Attempts<T> attempts = new Attempts<>( );
+        Runnable primary;
+
+        try
+        {
+            primary = submit( latencies, ( ) -> call.call( strEndPointUrl ), attempts, false );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // all the threads are busy
+            return call.call( strEndPointUrl );
+        }
+        Runnable hedged = null;
+
+        try
+        {
+            try
+            {
+                return attempts._result.get( latencies.getHedgeDelay( ), TimeUnit.MILLISECONDS );
+            }
+            catch( TimeoutException e )
+            {
+                if ( tryConsumeBudget( ) )
+                {
+                    hedged = submitHedge( latencies, ( ) -> call.call( hedgeUrl( strEndPointUrl ) ), attempts );
+                }
+            }
+
+            return attempts._result.get( );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new HttpTransportException( "Interrupted while waiting for " + strEndPointUrl, 0, 0, e );
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause( );
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new HttpTransportException( cause.getMessage( ), 0, 1, cause );
+        }
+        finally
+        {
+            // the request of the loser is aborted, its result is discarded
+            primary.run( );
+            if ( hedged != null )
+            {
+                hedged.run( );
+            }
+        }
+    }
+
+    /**
+     * run the hedged attempt of a blocking call, unless all the attempts have already failed or all the threads are busy
+     * 
+     * @param latencies
+     * @param call
+     * @param attempts
+     * @return the cancellation of the hedged attempt, null if it is not sent
+     */
+    private <T> Runnable submitHedge( LatencyWindow latencies, Call<T> call, Attempts<T> attempts )
+    {
+        if ( !attempts.add( ) )
+        {
+            refundBudget( );
+            return null;
+        }
+
+        try
+        {
+            Runnable hedged = submit( latencies, call, attempts, true );
+            _hedgedCount.incrementAndGet( );
+
+            return hedged;
+        }
+        catch( RejectedExecutionException e )
+        {
+            refundBudget( );
+            attempts.withdraw( );
+
+            return null;
+        }
+    }
+
+    /**
+     * run an attempt of a blocking call on the executor
+     * 
+     * @param latencies
+     * @param call
+     * @param attempts
+     *            the attempts of the call, completed by the first successful attempt or by the last failure
+     * @param bHedge
+     *            true for the hedged attempt
+     * @return the cancellation of the attempt, which aborts its request
+     * @throws RejectedExecutionException
+     *             if all the threads are busy
+     */
+    private <T> Runnable submit( LatencyWindow latencies, Call<T> call, Attempts<T> attempts, boolean bHedge )
+    {
+        Callable<T> attempt = CallDeadline.propagate( call::call );
+        RequestCanceller canceller = new RequestCanceller( );
+
+        Future<?> future = _executor.submit( ( ) -> {
+            long lStart = System.currentTimeMillis( );
+            try
+            {
+                T value = canceller.call( attempt );
+                latencies.record( System.currentTimeMillis( ) - lStart );
+                attempts.succeeded( value, bHedge );
+            }
+            catch( Exception e )
+            {
+                attempts.failed( e );
+            }
+        } );
+
+        return ( ) -> {
+            canceller.cancel( );
+            future.cancel( true );
+        };
+    }
+
+    /**
+     * start a non-blocking attempt, and record its latency if it succeeds
+     * 
+     * @param latencies
+     * @param call
+     * @return the future response of the request, which can be cancelled
+     */
+    private static CompletableFuture<String> timed( LatencyWindow latencies, Callable<CompletableFuture<String>> call )
+    {
+        long lStart = System.currentTimeMillis( );
+        CompletableFuture<String> future;
+
+        try
+        {
+            future = call.call( );
+        }
+        catch( Exception e )
+        {
+            future = new CompletableFuture<>( );
+            future.completeExceptionally( e );
+        }
+
+        future.whenComplete( ( strResponse, exception ) -> {
+            if ( exception == null )
+            {
+                latencies.record( System.currentTimeMillis( ) - lStart );
+            }
+        } );
+
+        return future;
+    }
+
+    /**
+     * forward the outcome of a non-blocking attempt to the result
+     * 
+     * @param attempt
+     * @param attempts
+     * @param bHedge
+     */
+    private void forward( CompletableFuture<String> attempt, Attempts<String> attempts, boolean bHedge )
+    {
+        attempt.whenComplete( ( strResponse, exception ) -> {
+            if ( exception == null )
+            {
+                attempts.succeeded( strResponse, bHedge );
+            }
+            else
+            {
+                attempts.failed( exception );
+            }
+        } );
+    }
+
+    /**
+     * @param strEndPointUrl
+     * @return the url of the hedged request
+     */
+    private String hedgeUrl( String strEndPointUrl )
+    {
+        String strApiEndPointUrl = getApiEndPointUrl( );
+
+        if ( _strHedgeEndPointUrl != null && strApiEndPointUrl != null && strEndPointUrl.startsWith( strApiEndPointUrl ) )
+        {
+            return _strHedgeEndPointUrl + strEndPointUrl.substring( strApiEndPointUrl.length( ) );
+        }
+
+        return strEndPointUrl;
+    }
+
+    /**
+     * each request adds a fraction of hedge to the budget
+     */
+    private synchronized void addBudget( )
+    {
+        _dBudgetTokens = Math.min( MAX_BUDGET_TOKENS, _dBudgetTokens + _dBudgetPercent / 100 );
+    }
+
+    /**
+     * @return true if the budget allows a hedged request
+     */
+    private synchronized boolean tryConsumeBudget( )
+    {
+        if ( _dBudgetTokens < 1 )
+        {
+            return false;
+        }
+        _dBudgetTokens--;
+
+        return true;
+    }
+
+    /**
+     * give back a hedge which has not been sent
+     */
+    private synchronized void refundBudget( )
+    {
+        _dBudgetTokens = Math.min( MAX_BUDGET_TOKENS, _dBudgetTokens + 1 );
+    }
+
+    /**
+     * @param strEndPointUrl
+     * @return the recent latencies of the endpoint of the url
+     */
+    private LatencyWindow getLatencies( String strEndPointUrl )
+    {
+        return _mapLatencies.computeIfAbsent( getEndpoint( strEndPointUrl ), strEndpoint -> new LatencyWindow( ) );
+    }
+
+    /**
+     * The attempts of a request : the result is completed by the first successful attempt, or by the failure of the last one
+     */
+    private final class Attempts<T>
+    {
+        private final CompletableFuture<T> _result = new CompletableFuture<>( );
+        private final AtomicInteger _remaining = new AtomicInteger( 1 );
+        private volatile Throwable _lastFailure;
+
+        /**
+         * add the hedged attempt, unless all the attempts have already failed
+         * 
+         * @return true if the hedged attempt can be sent
+         */
+        boolean add( )
+        {
+            int nRemaining;
+            do
+            {
+                nRemaining = _remaining.get( );
+                if ( nRemaining == 0 )
+                {
+                    return false;
+                }
+            }
+            while ( !_remaining.compareAndSet( nRemaining, nRemaining + 1 ) );
+
+            return true;
+        }
+
+        /**
+         * remove the hedged attempt which could not be sent
+         */
+        void withdraw( )
+        {
+            if ( _remaining.decrementAndGet( ) == 0 )
+            {
+                _result.completeExceptionally( _lastFailure );
+            }
+        }
+
+        void succeeded( T value, boolean bHedge )
+        {
+            if ( _result.complete( value ) && bHedge )
+            {
+                _hedgeWinCount.incrementAndGet( );
+            }
+        }
+
+        void failed( Throwable exception )
+        {
+            _lastFailure = exception;
+            if ( _remaining.decrementAndGet( ) == 0 )
+            {
+                _result.completeExceptionally( exception );
+            }
+        }
+    }
+
+    /**
+     * Recent latencies of an endpoint
+     */
+    private final class LatencyWindow
+    {
+        private final long [ ] _latencies = new long [ _nSampleSize];
+        private int _nCount;
+        private int _nPosition;
+
+        synchronized void record( long lLatency )
+        {
+            _latencies [_nPosition] = lLatency;
+            _nPosition = ( _nPosition + 1 ) % _latencies.length;
+            _nCount = Math.min( _nCount + 1, _latencies.length );
+        }
+
+        /**
+         * @return the configured percentile of the recent latencies, or the initial delay if they are not enough
+         */
+        synchronized long getHedgeDelay( )
+        {
+            if ( _nCount < Math.min( MIN_SAMPLES, _latencies.length ) )
+            {
+                return _lInitialDelay;
+            }
+
+            long [ ] sorted = Arrays.copyOf( _latencies, _nCount );
+            Arrays.sort( sorted );
+            int nIndex = Math.min( _nCount - 1, (int) Math.ceil( _nPercentile / 100.0 * _nCount ) - 1 );
+
+            return Math.max( _lMinDelay, sorted [Math.max( nIndex, 0 )] );
+        }
+    }
+
+    /**
+     * A call which can throw an IOException
+     */
+    @FunctionalInterface
+    private interface Call<T>
+    {
+        T call( ) throws IOException;
+    }
+
+    /**
+     * A call of a url which can throw an IOException
+     */
+    @FunctionalInterface
+    private interface UrlCall<T>
+    {
+        T call( String strUrl ) throws IOException;
+    }
+}
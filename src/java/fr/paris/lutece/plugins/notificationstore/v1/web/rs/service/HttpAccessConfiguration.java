@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.auth.AuthScope;
+import org.apache.hc.client5.http.auth.Credentials;
+import org.apache.hc.client5.http.auth.NTCredentials;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.client5.http.impl.auth.BasicCredentialsProvider;
+import org.apache.hc.client5.http.impl.routing.DefaultProxyRoutePlanner;
+import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Configuration of library-httpaccess (httpAccess.* properties : proxy, proxy credentials, hosts without proxy and timeouts),
+ * applied to the pooled HTTP clients.
+ * The SSL configuration is the one of the JVM (javax.net.ssl.* system properties).
+ */
+public final class HttpAccessConfiguration
+{
+    private static final String PROPERTY_PROXY_HOST = "httpAccess.proxyHost";
+    private static final String PROPERTY_PROXY_PORT = "httpAccess.proxyPort";
+    private static final String PROPERTY_PROXY_USERNAME = "httpAccess.proxyUserName";
+    private static final String PROPERTY_PROXY_PASSWORD = "httpAccess.proxyPassword";
+    private static final String PROPERTY_HOST_NAME = "httpAccess.hostName";
+    private static final String PROPERTY_DOMAIN_NAME = "httpAccess.domainName";
+    private static final String PROPERTY_REALM = "httpAccess.realm";
+    private static final String PROPERTY_NO_PROXY_FOR = "httpAccess.noProxyFor";
+    private static final String PROPERTY_SOCKET_TIMEOUT = "httpAccess.socketTimeout";
+    private static final String PROPERTY_CONNECTION_TIMEOUT = "httpAccess.connectionTimeout";
+    private static final String PROPERTY_POOL_MAX_TOTAL_CONNECTION = "httpAccess.connectionPoolMaxTotalConnection";
+    private static final String PROPERTY_POOL_MAX_CONNECTION_PER_HOST = "httpAccess.connectionPoolMaxConnectionPerHost";
+    private static final String SEPARATOR = ",";
+
+    private String _strProxyHost;
+    private int _nProxyPort;
+    private String _strProxyUserName;
+    private String _strProxyPassword;
+    private String _strHostName;
+    private String _strDomainName;
+    private String _strRealm;
+    private String [ ] _noProxyFor = new String [ 0];
+    private long _lSocketTimeout = HttpConnectionPool.DEFAULT_SOCKET_TIMEOUT;
+    private long _lConnectionTimeout = HttpConnectionPool.DEFAULT_CONNECTION_TIMEOUT;
+    private int _nMaxTotalConnections = HttpConnectionPool.DEFAULT_MAX_TOTAL_CONNECTIONS;
+    private int _nMaxConnectionsPerRoute = HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    /**
+     * Constructor, without proxy
+     */
+    public HttpAccessConfiguration( )
+    {
+    }
+
+    /**
+     * @return the configuration read from the httpAccess.* properties (the defaults if the properties are not available)
+     */
+    public static HttpAccessConfiguration fromProperties( )
+    {
+        HttpAccessConfiguration configuration = new HttpAccessConfiguration( );
+
+        try
+        {
+            configuration._strProxyHost = AppPropertiesService.getProperty( PROPERTY_PROXY_HOST );
+            configuration._nProxyPort = AppPropertiesService.getPropertyInt( PROPERTY_PROXY_PORT, 0 );
+            configuration._strProxyUserName = AppPropertiesService.getProperty( PROPERTY_PROXY_USERNAME );
+            configuration._strProxyPassword = AppPropertiesService.getProperty( PROPERTY_PROXY_PASSWORD );
+            configuration._strHostName = AppPropertiesService.getProperty( PROPERTY_HOST_NAME );
+            configuration._strDomainName = AppPropertiesService.getProperty( PROPERTY_DOMAIN_NAME );
+            configuration._strRealm = AppPropertiesService.getProperty( PROPERTY_REALM );
+            configuration._noProxyFor = StringUtils.split( AppPropertiesService.getProperty( PROPERTY_NO_PROXY_FOR, StringUtils.EMPTY ), SEPARATOR );
+            configuration._lSocketTimeout = AppPropertiesService.getPropertyLong( PROPERTY_SOCKET_TIMEOUT, HttpConnectionPool.DEFAULT_SOCKET_TIMEOUT );
+            configuration._lConnectionTimeout = AppPropertiesService.getPropertyLong( PROPERTY_CONNECTION_TIMEOUT,
+                    HttpConnectionPool.DEFAULT_CONNECTION_TIMEOUT );
+            configuration._nMaxTotalConnections = AppPropertiesService.getPropertyInt( PROPERTY_POOL_MAX_TOTAL_CONNECTION,
+                    HttpConnectionPool.DEFAULT_MAX_TOTAL_CONNECTIONS );
+            configuration._nMaxConnectionsPerRoute = AppPropertiesService.getPropertyInt( PROPERTY_POOL_MAX_CONNECTION_PER_HOST,
+                    HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_ROUTE );
+        }
+        catch( RuntimeException e )
+        {
+            // outside of a Lutece context
+            AppLogService.info( "NotificationStore - httpAccess properties not available, using the default HTTP configuration" );
+        }
+
+        return configuration;
+    }
+
+    /**
+     * @return the response timeout in milliseconds
+     */
+    public long getSocketTimeout( )
+    {
+        return _lSocketTimeout;
+    }
+
+    /**
+     * @return the connect timeout in milliseconds
+     */
+    public long getConnectionTimeout( )
+    {
+        return _lConnectionTimeout;
+    }
+
+    /**
+     * @return the max number of connections of the pool
+     */
+    public int getMaxTotalConnections( )
+    {
+        return _nMaxTotalConnections;
+    }
+
+    /**
+     * @return the max number of connections per route (host) of the pool
+     */
+    public int getMaxConnectionsPerRoute( )
+    {
+        return _nMaxConnectionsPerRoute;
+    }
+
+    /**
+     * @return true if a proxy is configured
+     */
+    public boolean hasProxy( )
+    {
+        return StringUtils.isNotBlank( _strProxyHost ) && _nProxyPort > 0;
+    }
+
+    /**
+     * @return the route planner which sends the requests through the proxy, except for the hosts without proxy ; null without proxy
+     */
+    public HttpRoutePlanner getRoutePlanner( )
+    {
+        if ( !hasProxy( ) )
+        {
+            return null;
+        }
+
+        return new DefaultProxyRoutePlanner( new HttpHost( _strProxyHost, _nProxyPort ) )
+        {
+            @Override
+            protected HttpHost determineProxy( HttpHost target, HttpContext context )
+            {
+                return isNoProxyFor( target.getHostName( ) ) ? null : super.determineProxy( target, context );
+            }
+        };
+    }
+
+    /**
+     * @return the credentials of the proxy, null if there are none
+     */
+    public BasicCredentialsProvider getCredentialsProvider( )
+    {
+        if ( !hasProxy( ) || StringUtils.isBlank( _strProxyUserName ) )
+        {
+            return null;
+        }
+
+        char [ ] password = StringUtils.defaultString( _strProxyPassword ).toCharArray( );
+        Credentials credentials = StringUtils.isNotBlank( _strDomainName ) ? new NTCredentials( _strProxyUserName, password, _strHostName, _strDomainName )
+                : new UsernamePasswordCredentials( _strProxyUserName, password );
+
+        BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider( );
+        credentialsProvider.setCredentials( new AuthScope( null, _strProxyHost, _nProxyPort, StringUtils.defaultIfBlank( _strRealm, null ), null ),
+                credentials );
+
+        return credentialsProvider;
+    }
+
+    /**
+     * @param strHost
+     * @return true if the host is reached without proxy ('*' matches any characters)
+     */
+    boolean isNoProxyFor( String strHost )
+    {
+        for ( String strPattern : _noProxyFor )
+        {
+            String strRegex = "\\Q" + strPattern.trim( ).replace( "*", "\\E.*\\Q" ) + "\\E";
+            if ( strHost != null && strHost.matches( strRegex ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
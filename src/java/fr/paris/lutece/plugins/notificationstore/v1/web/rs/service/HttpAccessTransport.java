@@ -33,29 +33,97 @@
  */
 package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpPut;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
 import org.apache.hc.core5.net.URIBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
 import org.apache.log4j.Logger;
 
-import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.CallDeadline;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IAsyncHttpTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
 import fr.paris.lutece.util.httpaccess.HttpAccess;
 
 /**
- * IHttpTransportProvider which use library-httpaccess
+ * IHttpTransportProvider which use a pool of keep-alive connections (HttpClient 5), configured with the httpAccess.* properties of
+ * library-httpaccess (proxy, proxy credentials, hosts without proxy, timeouts and pool sizes).
+ * The non-blocking requests use the async HttpClient.
+ * The blocking requests are retried according to the retry policy (if any), and throw an HttpTransportException when they fail.
+ * The timeouts of the requests are reduced to the remaining time of the current call deadline (if any), and the requests are aborted
+ * with a DeadlineExceededException when it is exceeded.
  */
-public class HttpAccessTransport implements IHttpTransportProvider
+public class HttpAccessTransport implements IAsyncHttpTransportProvider
 {
     private static Logger _logger = Logger.getLogger( HttpAccessTransport.class );
 
+    /**
+     * @deprecated the requests use the connection pool, this client is kept for the subclasses
+     */
+    @Deprecated
     protected HttpAccess _httpClient;
     protected String _strEndPoint;
 
+    // connection pool configuration, the defaults come from the httpAccess.* properties
+    private final HttpAccessConfiguration _configuration;
+    private int _nMaxTotalConnections;
+    private int _nMaxConnectionsPerRoute;
+    private long _lIdleConnectionTimeout = HttpConnectionPool.DEFAULT_IDLE_CONNECTION_TIMEOUT;
+    private long _lKeepAliveDuration = HttpConnectionPool.DEFAULT_KEEP_ALIVE_DURATION;
+    private long _lConnectionTimeout;
+    private long _lSocketTimeout;
+    private long _lConnectionRequestTimeout = HttpConnectionPool.DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+
+    private volatile HttpConnectionPool _connectionPool;
+    private volatile ScheduledThreadPoolExecutor _deadlineScheduler;
+
+    private RetryPolicy _retryPolicy;
+
+    /**
+     * Constructor
+     */
+    @SuppressWarnings( "deprecation" )
     public HttpAccessTransport( )
     {
-        this._httpClient = new HttpAccess( );
+        _httpClient = new HttpAccess( );
+        _configuration = HttpAccessConfiguration.fromProperties( );
+        _nMaxTotalConnections = _configuration.getMaxTotalConnections( );
+        _nMaxConnectionsPerRoute = _configuration.getMaxConnectionsPerRoute( );
+        _lConnectionTimeout = _configuration.getConnectionTimeout( );
+        _lSocketTimeout = _configuration.getSocketTimeout( );
     }
 
     /**
@@ -78,31 +146,185 @@ public class HttpAccessTransport implements IHttpTransportProvider
         return _strEndPoint;
     }
 
-    @Override
-    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    /**
+     * set the max number of connections of the pool
+     * 
+     * @param nMaxTotalConnections
+     */
+    public void setMaxTotalConnections( int nMaxTotalConnections )
     {
-        try
-        {
-            URIBuilder uriBuilder = new URIBuilder( strEndPointUrl );
+        _nMaxTotalConnections = nMaxTotalConnections;
+    }
 
-            if ( ( mapParams != null ) && !mapParams.isEmpty( ) )
+    /**
+     * set the max number of connections per route (host) of the pool
+     * 
+     * @param nMaxConnectionsPerRoute
+     */
+    public void setMaxConnectionsPerRoute( int nMaxConnectionsPerRoute )
+    {
+        _nMaxConnectionsPerRoute = nMaxConnectionsPerRoute;
+    }
+
+    /**
+     * set the idle time (in seconds) after which a pooled connection is evicted
+     * 
+     * @param lIdleConnectionTimeout
+     */
+    public void setIdleConnectionTimeout( long lIdleConnectionTimeout )
+    {
+        _lIdleConnectionTimeout = lIdleConnectionTimeout;
+    }
+
+    /**
+     * set the max time (in seconds) a connection is kept alive between two requests
+     * 
+     * @param lKeepAliveDuration
+     */
+    public void setKeepAliveDuration( long lKeepAliveDuration )
+    {
+        _lKeepAliveDuration = lKeepAliveDuration;
+    }
+
+    /**
+     * set the connect timeout (in milliseconds)
+     * 
+     * @param lConnectionTimeout
+     */
+    public void setConnectionTimeout( long lConnectionTimeout )
+    {
+        _lConnectionTimeout = lConnectionTimeout;
+    }
+
+    /**
+     * set the response timeout (in milliseconds)
+     * 
+     * @param lSocketTimeout
+     */
+    public void setSocketTimeout( long lSocketTimeout )
+    {
+        _lSocketTimeout = lSocketTimeout;
+    }
+
+    /**
+     * set the max wait (in milliseconds) for a connection of the pool
+     * 
+     * @param lConnectionRequestTimeout
+     */
+    public void setConnectionRequestTimeout( long lConnectionRequestTimeout )
+    {
+        _lConnectionRequestTimeout = lConnectionRequestTimeout;
+    }
+
+    /**
+     * set the retry policy of the blocking requests (none by default)
+     * 
+     * @param retryPolicy
+     */
+    public void setRetryPolicy( RetryPolicy retryPolicy )
+    {
+        _retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Get the connection pool, created on first use with the current configuration
+     * 
+     * @return the connection pool
+     */
+    protected HttpConnectionPool getConnectionPool( )
+    {
+        HttpConnectionPool pool = _connectionPool;
+
+        if ( pool == null )
+        {
+            synchronized( this )
             {
-                for ( String strParamKey : mapParams.keySet( ) )
+                pool = _connectionPool;
+                if ( pool == null )
                 {
-                    uriBuilder.addParameter( strParamKey, mapParams.get( strParamKey ) );
+                    pool = new HttpConnectionPool( _nMaxTotalConnections, _nMaxConnectionsPerRoute, _lIdleConnectionTimeout, _lKeepAliveDuration,
+                            _lConnectionTimeout, _lSocketTimeout, _lConnectionRequestTimeout, _configuration );
+                    _connectionPool = pool;
                 }
             }
+        }
 
-            addAuthentication( mapHeadersRequest );
+        return pool;
+    }
+
+    /**
+     * Get the scheduler of the request aborts on deadline, created on first use
+     * 
+     * @return the scheduler
+     */
+    private ScheduledThreadPoolExecutor getDeadlineScheduler( )
+    {
+        ScheduledThreadPoolExecutor scheduler = _deadlineScheduler;
 
-            return this._httpClient.doGet( uriBuilder.toString( ), null, null, mapHeadersRequest );
+        if ( scheduler == null )
+        {
+            synchronized( this )
+            {
+                scheduler = _deadlineScheduler;
+                if ( scheduler == null )
+                {
+                    scheduler = new ScheduledThreadPoolExecutor( 1, runnable -> {
+                        Thread thread = new Thread( runnable, "notificationstore-deadline" );
+                        thread.setDaemon( true );
+                        return thread;
+                    } );
+                    scheduler.setRemoveOnCancelPolicy( true );
+                    _deadlineScheduler = scheduler;
+                }
+            }
         }
-        catch( Exception e )
+
+        return scheduler;
+    }
+
+    /**
+     * get the statistics of the connection pool
+     * 
+     * @return the pool statistics
+     */
+    public PoolStats getPoolStats( )
+    {
+        return getConnectionPool( ).getStats( );
+    }
+
+    /**
+     * Close the connection pool and stop the scheduler of the request aborts
+     */
+    public void close( )
+    {
+        synchronized( this )
         {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+            if ( _deadlineScheduler != null )
+            {
+                _deadlineScheduler.shutdownNow( );
+                _deadlineScheduler = null;
+            }
+            if ( _connectionPool != null )
+            {
+                try
+                {
+                    _connectionPool.close( );
+                }
+                catch( IOException e )
+                {
+                    _logger.error( "LibraryNotificationstore - Error closing connection pool :" + e.getMessage( ), e );
+                }
+                _connectionPool = null;
+            }
         }
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        addAuthentication( mapHeadersRequest );
 
-        return StringUtils.EMPTY;
+        return execute( new HttpGet( buildUri( strEndPointUrl, mapParams ) ), mapHeadersRequest );
     }
     
     /**
@@ -112,22 +334,9 @@ public class HttpAccessTransport implements IHttpTransportProvider
     @Override
     public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
     {
-        HttpAccess clientHttp = new HttpAccess( );
-        Map<String, String> mapHeadersResponse = new HashMap< >( );
-        
-        String strOutput = StringUtils.EMPTY;
+        addAuthentication( mapHeadersRequest );
 
-        try
-        {
-            addAuthentication( mapHeadersRequest );
-            strOutput = clientHttp.doPost( strEndPointUrl, mapParams, null, null, mapHeadersRequest, mapHeadersResponse );
-        }
-        catch( Exception e )
-        {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
-        }
-
-        return strOutput;
+        return post( strEndPointUrl, mapParams, mapHeadersRequest );
     }
     
     
@@ -138,22 +347,111 @@ public class HttpAccessTransport implements IHttpTransportProvider
     @Override
     public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
     {
-        HttpAccess clientHttp = new HttpAccess( );
-        Map<String, String> mapHeadersResponse = new HashMap< >( );
-        
-        String strOutput = StringUtils.EMPTY;
+        addAuthentication( mapHeadersRequest );
+
+        HttpPost request = new HttpPost( strEndPointUrl );
+        request.setEntity( new StringEntity( json, ContentType.APPLICATION_JSON ) );
+
+        return execute( request, mapHeadersRequest );
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     */
+    @Override
+    public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        addAuthentication( mapHeadersRequest );
+
+        HttpPut request = new HttpPut( strEndPointUrl );
+        request.setEntity( buildFormEntity( mapParams ) );
+
+        return execute( request, mapHeadersRequest );
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     */
+    @Override
+    public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    {
+        addAuthentication( mapHeadersRequest );
+
+        HttpPut request = new HttpPut( strEndPointUrl );
+        request.setEntity( new StringEntity( json, ContentType.APPLICATION_JSON ) );
+
+        return execute( request, mapHeadersRequest );
+    }
+
+    /**
+     * add specific authentication to request
+     * 
+     * @param mapHeadersRequest
+     *            map of headers to add
+     */
+    protected void addAuthentication( Map<String, String> mapHeadersRequest )
+    {
+        // default : no authentication
+    }
+
+    @Override
+    public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+    {
+        addAuthentication( mapHeadersRequest );
+
+        return execute( new HttpDelete( buildUri( strEndPointUrl, null ) ), mapHeadersRequest );
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The response body is read from the connection, without being loaded as a String.
+     */
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        addAuthentication( mapHeadersRequest );
+
+        return execute( new HttpGet( buildUri( strEndPointUrl, mapParams ) ), mapHeadersRequest, responseReader );
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The response body is read from the connection, without being loaded as a String.
+     */
+    @Override
+    public <T> T doPostJsonStream( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+            throws IOException
+    {
+        addAuthentication( mapHeadersRequest );
+
+        HttpPost request = new HttpPost( strEndPointUrl );
+        request.setEntity( new StringEntity( json, ContentType.APPLICATION_JSON ) );
 
+        return execute( request, mapHeadersRequest, responseReader );
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     */
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
         try
         {
             addAuthentication( mapHeadersRequest );
-            strOutput = clientHttp.doPostJSON( strEndPointUrl, json, mapHeadersRequest, mapHeadersResponse );
+
+            return executeAsync( new SimpleHttpRequest( "GET", buildUri( strEndPointUrl, mapParams ) ), mapHeadersRequest );
         }
         catch( Exception e )
         {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+            return failedFuture( e );
         }
-
-        return strOutput;
     }
 
     /**
@@ -161,78 +459,442 @@ public class HttpAccessTransport implements IHttpTransportProvider
      * 
      */
     @Override
-    public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    public CompletableFuture<String> doPostJsonAsync( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
     {
-        HttpAccess clientHttp = new HttpAccess( );
-        Map<String, String> mapHeadersResponse = new HashMap< >( );
-        
-        String strOutput = StringUtils.EMPTY;
-
         try
         {
             addAuthentication( mapHeadersRequest );
-            strOutput = clientHttp.doPut( strEndPointUrl, null, null, mapParams, mapHeadersRequest, mapHeadersResponse );
+
+            SimpleHttpRequest request = new SimpleHttpRequest( "POST", buildUri( strEndPointUrl, null ) );
+            request.setBody( json, ContentType.APPLICATION_JSON );
+
+            return executeAsync( request, mapHeadersRequest );
         }
         catch( Exception e )
         {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+            return failedFuture( e );
         }
+    }
+
+    /**
+     * execute the request on the non-blocking client
+     * 
+     * @param request
+     *            the request
+     * @param mapHeadersRequest
+     *            headers of the request
+     * @return the future response body, completed exceptionally if the call fails or the response status is not 2xx
+     */
+    protected CompletableFuture<String> executeAsync( SimpleHttpRequest request, Map<String, String> mapHeadersRequest )
+    {
+        if ( mapHeadersRequest != null )
+        {
+            for ( Map.Entry<String, String> header : mapHeadersRequest.entrySet( ) )
+            {
+                request.setHeader( header.getKey( ), header.getValue( ) );
+            }
+        }
+
+        CallDeadline deadline = CallDeadline.current( );
+        String strRequest = request.getMethod( ) + " " + request.getRequestUri( );
+
+        if ( deadline != null )
+        {
+            if ( deadline.isExpired( ) )
+            {
+                return failedFuture( new DeadlineExceededException( strRequest, deadline.getTimeout( ), 0, null ) );
+            }
+            request.setConfig( getRequestConfig( deadline ) );
+        }
+
+        CompletableFuture<String> futureResponse = new CompletableFuture<>( );
+
+        Future<SimpleHttpResponse> future = getConnectionPool( ).getHttpAsyncClient( ).execute( request, new FutureCallback<SimpleHttpResponse>( )
+        {
+            @Override
+            public void completed( SimpleHttpResponse response )
+            {
+                String strBody = ( response.getBodyText( ) != null ) ? response.getBodyText( ) : StringUtils.EMPTY;
+
+                if ( response.getCode( ) < 200 || response.getCode( ) >= 300 )
+                {
+                    _logger.debug( "LibraryNotificationstore - invalid response [" + strBody + "]" );
+                    futureResponse.completeExceptionally( new HttpResponseException( response.getCode( ), response.getReasonPhrase( ) ) );
+                }
+                else
+                {
+                    futureResponse.complete( strBody );
+                }
+            }
+
+            @Override
+            public void failed( Exception e )
+            {
+                _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+                futureResponse.completeExceptionally( e );
+            }
+
+            @Override
+            public void cancelled( )
+            {
+                futureResponse.cancel( false );
+            }
+        } );
 
-        return strOutput;
+        // the exchange is aborted when the deadline is exceeded
+        ScheduledFuture<?> abort = ( deadline != null ) ? getDeadlineScheduler( ).schedule( ( ) -> {
+            if ( futureResponse.completeExceptionally( new DeadlineExceededException( strRequest, deadline.getTimeout( ), 1, null ) ) )
+            {
+                future.cancel( true );
+            }
+        }, deadline.getRemaining( ), TimeUnit.MILLISECONDS ) : null;
+
+        // cancelling the returned future aborts the exchange
+        futureResponse.whenComplete( ( strBody, exception ) -> {
+            if ( abort != null )
+            {
+                abort.cancel( false );
+            }
+            if ( futureResponse.isCancelled( ) )
+            {
+                future.cancel( true );
+            }
+        } );
+
+        return futureResponse;
     }
-    
+
     /**
-     * {@inheritDoc}
+     * @param exception
+     * @return a future completed with the exception
+     */
+    private static CompletableFuture<String> failedFuture( Exception exception )
+    {
+        _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + exception.getMessage( ), exception );
+
+        CompletableFuture<String> future = new CompletableFuture<>( );
+        future.completeExceptionally( exception );
+
+        return future;
+    }
+
+    /**
+     * make a form POST request on the pooled client, without authentication
      * 
+     * @param strUrl
+     *            url to call
+     * @param mapParams
+     *            params to post
+     * @param mapHeadersRequest
+     *            headers of the request
+     * @return response body as String
+     * @throws HttpTransportException
+     *             if the call fails
      */
-    @Override
-    public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+    protected String post( String strUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
     {
-        HttpAccess clientHttp = new HttpAccess( );
-        Map<String, String> mapHeadersResponse = new HashMap< >( );
-        
-        String strOutput = StringUtils.EMPTY;
+        HttpPost request = new HttpPost( strUrl );
+        request.setEntity( buildFormEntity( mapParams ) );
 
-        try
+        return execute( request, mapHeadersRequest );
+    }
+
+    /**
+     * execute the request on the pooled client
+     * 
+     * @param request
+     *            the request
+     * @param mapHeadersRequest
+     *            headers of the request
+     * @return response body as String
+     * @throws HttpTransportException
+     *             if the call fails or the response status is not 2xx, once the retries are exhausted
+     */
+    protected String execute( ClassicHttpRequest request, Map<String, String> mapHeadersRequest )
+    {
+        addHeaders( request, mapHeadersRequest );
+
+        return executeWithRetry( request, ( ) -> getConnectionPool( ).getHttpClient( ).execute( request, HttpAccessTransport::handleResponse ) );
+    }
+
+    /**
+     * execute the request on the pooled client, the response body is read as a stream
+     * 
+     * @param request
+     *            the request
+     * @param mapHeadersRequest
+     *            headers of the request
+     * @param responseReader
+     *            the reader of the response body
+     * @return the object read from the response body
+     * @throws HttpTransportException
+     *             if the call fails, the response status is not 2xx or the body can't be read, once the retries are exhausted
+     */
+    protected <T> T execute( ClassicHttpRequest request, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+    {
+        addHeaders( request, mapHeadersRequest );
+
+        return executeWithRetry( request, ( ) -> getConnectionPool( ).getHttpClient( ).execute( request, response -> {
+            HttpEntity entity = response.getEntity( );
+
+            if ( response.getCode( ) < 200 || response.getCode( ) >= 300 )
+            {
+                _logger.debug( "LibraryNotificationstore - invalid response [" + ( ( entity != null ) ? EntityUtils.toString( entity, StandardCharsets.UTF_8 ) : StringUtils.EMPTY ) + "]" );
+                throw new HttpResponseException( response.getCode( ), response.getReasonPhrase( ) );
+            }
+            if ( entity == null )
+            {
+                throw new IOException( "Empty response body" );
+            }
+
+            try ( InputStream inputStream = entity.getContent( ) )
+            {
+                return responseReader.read( inputStream );
+            }
+        } ) );
+    }
+
+    /**
+     * execute a request, and retry it according to the retry policy
+     * 
+     * @param request
+     *            the request
+     * @param call
+     *            the execution of the request
+     * @return the result of the call
+     * @throws HttpTransportException
+     *             if the last attempt fails
+     */
+    private <T> T executeWithRetry( ClassicHttpRequest request, HttpCall<T> call )
+    {
+        long lStart = System.currentTimeMillis( );
+        CallDeadline deadline = CallDeadline.current( );
+        RequestCanceller canceller = ( request instanceof HttpUriRequestBase ) ? RequestCanceller.current( ) : null;
+        String strRequest = request.getMethod( ) + " " + request.getRequestUri( );
+
+        for ( int nAttempt = 1;; nAttempt++ )
         {
-            addAuthentication( mapHeadersRequest );
-            strOutput = clientHttp.doPutJSON( strEndPointUrl, json, mapHeadersRequest, mapHeadersResponse );
+            ScheduledFuture<?> abort = ( deadline != null ) ? applyDeadline( request, deadline, strRequest, nAttempt ) : null;
+            if ( canceller != null )
+            {
+                canceller.setAbort( ( (HttpUriRequestBase) request )::cancel );
+            }
+
+            try
+            {
+                return call.execute( );
+            }
+            catch( IOException e )
+            {
+                if ( canceller != null && canceller.isCancelled( ) )
+                {
+                    _logger.debug( "LibraryNotificationstore - " + strRequest + " cancelled" );
+                    throw new HttpTransportException( strRequest + " cancelled", 0, nAttempt, e );
+                }
+                if ( deadline != null && deadline.isExpired( ) )
+                {
+                    _logger.warn( "LibraryNotificationstore - " + strRequest + " aborted after " + nAttempt + " attempt(s) : deadline of "
+                            + deadline.getTimeout( ) + " ms exceeded" );
+                    throw new DeadlineExceededException( strRequest, deadline.getTimeout( ), nAttempt, e );
+                }
+
+                long lDelay = ( _retryPolicy != null ) ? _retryPolicy.getRetryDelay( request.getMethod( ), e, nAttempt, System.currentTimeMillis( ) - lStart )
+                        : -1;
+
+                // no retry which would start after the deadline
+                if ( deadline != null && lDelay >= deadline.getRemaining( ) )
+                {
+                    lDelay = -1;
+                }
+
+                if ( lDelay < 0 )
+                {
+                    _logger.error( "LibraryNotificationstore - Error HttpAccessTransport : " + strRequest + " failed after " + nAttempt + " attempt(s) : "
+                            + e.getMessage( ), e );
+                    throw new HttpTransportException( strRequest + " failed : " + e.getMessage( ), getStatusCode( e ), nAttempt, e );
+                }
+
+                _logger.warn( "LibraryNotificationstore - " + strRequest + " failed (" + e.getMessage( ) + "), retry in " + lDelay + " ms" );
+
+                try
+                {
+                    Thread.sleep( lDelay );
+                }
+                catch( InterruptedException ie )
+                {
+                    Thread.currentThread( ).interrupt( );
+                    throw new HttpTransportException( strRequest + " interrupted", getStatusCode( e ), nAttempt, e );
+                }
+            }
+            finally
+            {
+                if ( abort != null )
+                {
+                    abort.cancel( false );
+                }
+                if ( canceller != null )
+                {
+                    canceller.setAbort( null );
+                }
+            }
         }
-        catch( Exception e )
+    }
+
+    /**
+     * reduce the timeouts of the request to the remaining time of the deadline, and abort the request when the deadline is exceeded
+     * 
+     * @param request
+     *            the request
+     * @param deadline
+     *            the deadline of the call
+     * @param strRequest
+     *            the request, for the messages
+     * @param nAttempt
+     *            the attempt
+     * @return the scheduled abort of the request, null if the request can't be aborted
+     * @throws DeadlineExceededException
+     *             if the deadline is already exceeded
+     */
+    private ScheduledFuture<?> applyDeadline( ClassicHttpRequest request, CallDeadline deadline, String strRequest, int nAttempt )
+    {
+        if ( deadline.isExpired( ) )
         {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+            throw new DeadlineExceededException( strRequest, deadline.getTimeout( ), nAttempt - 1, null );
         }
+        if ( !( request instanceof HttpUriRequestBase ) )
+        {
+            return null;
+        }
+
+        HttpUriRequestBase uriRequest = (HttpUriRequestBase) request;
+        uriRequest.setConfig( getRequestConfig( deadline ) );
 
-        return strOutput;
+        return getDeadlineScheduler( ).schedule( uriRequest::cancel, deadline.getRemaining( ), TimeUnit.MILLISECONDS );
     }
 
     /**
-     * add specific authentication to request
+     * @param deadline
+     *            the deadline of the call
+     * @return the configured timeouts, reduced to the remaining time of the deadline
+     */
+    private RequestConfig getRequestConfig( CallDeadline deadline )
+    {
+        long lRemaining = Math.max( 1, deadline.getRemaining( ) );
+
+        return RequestConfig.custom( )
+                .setConnectTimeout( Timeout.ofMilliseconds( Math.min( _lConnectionTimeout, lRemaining ) ) )
+                .setResponseTimeout( Timeout.ofMilliseconds( Math.min( _lSocketTimeout, lRemaining ) ) )
+                .setConnectionRequestTimeout( Timeout.ofMilliseconds( Math.min( _lConnectionRequestTimeout, lRemaining ) ) )
+                .build( );
+    }
+
+    /**
+     * @param exception
+     * @return the HTTP status of the failure, 0 if no response was received
+     */
+    private static int getStatusCode( IOException exception )
+    {
+        return ( exception instanceof HttpResponseException ) ? ( (HttpResponseException) exception ).getStatusCode( ) : 0;
+    }
+
+    /**
+     * Execution of a request
+     */
+    @FunctionalInterface
+    private interface HttpCall<T>
+    {
+        T execute( ) throws IOException;
+    }
+
+    /**
+     * add the headers to the request
      * 
+     * @param request
      * @param mapHeadersRequest
-     *            map of headers to add
      */
-    protected void addAuthentication( Map<String, String> mapHeadersRequest )
+    private static void addHeaders( ClassicHttpRequest request, Map<String, String> mapHeadersRequest )
     {
-        // default : no authentication
+        if ( mapHeadersRequest != null )
+        {
+            for ( Map.Entry<String, String> header : mapHeadersRequest.entrySet( ) )
+            {
+                request.setHeader( header.getKey( ), header.getValue( ) );
+            }
+        }
     }
 
-    @Override
-    public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+    /**
+     * read the response body, and check the status
+     * 
+     * @param response
+     *            the response
+     * @return the body as String
+     * @throws IOException
+     * @throws ParseException
+     */
+    private static String handleResponse( ClassicHttpResponse response ) throws IOException, ParseException
+    {
+        HttpEntity entity = response.getEntity( );
+        String strBody = ( entity != null ) ? EntityUtils.toString( entity, StandardCharsets.UTF_8 ) : StringUtils.EMPTY;
+
+        if ( response.getCode( ) < 200 || response.getCode( ) >= 300 )
+        {
+            _logger.debug( "LibraryNotificationstore - invalid response [" + strBody + "]" );
+            throw new HttpResponseException( response.getCode( ), response.getReasonPhrase( ) );
+        }
+
+        return strBody;
+    }
+
+    /**
+     * build the uri with query parameters
+     * 
+     * @param strEndPointUrl
+     * @param mapParams
+     * @return the uri
+     * @throws HttpTransportException
+     *             if the url is invalid
+     */
+    private static URI buildUri( String strEndPointUrl, Map<String, String> mapParams )
     {
         try
         {
             URIBuilder uriBuilder = new URIBuilder( strEndPointUrl );
 
-            addAuthentication( mapHeadersRequest );
+            if ( ( mapParams != null ) && !mapParams.isEmpty( ) )
+            {
+                for ( Map.Entry<String, String> param : mapParams.entrySet( ) )
+                {
+                    uriBuilder.addParameter( param.getKey( ), param.getValue( ) );
+                }
+            }
 
-            return this._httpClient.doDelete( uriBuilder.toString( ), null, null, mapHeadersRequest, null );
+            return uriBuilder.build( );
         }
-        catch( Exception e )
+        catch( URISyntaxException e )
         {
-            _logger.error( "LibraryNotificationstore - Error HttpAccessTransport :" + e.getMessage( ), e );
+            throw new HttpTransportException( "Invalid url " + strEndPointUrl + " : " + e.getMessage( ), 0, 0, e );
+        }
+    }
+
+    /**
+     * build a url encoded form entity
+     * 
+     * @param mapParams
+     * @return the entity
+     */
+    private static HttpEntity buildFormEntity( Map<String, String> mapParams )
+    {
+        List<NameValuePair> listParams = new ArrayList<>( );
+
+        if ( mapParams != null )
+        {
+            for ( Map.Entry<String, String> param : mapParams.entrySet( ) )
+            {
+                listParams.add( new BasicNameValuePair( param.getKey( ), param.getValue( ) ) );
+            }
         }
 
-        return StringUtils.EMPTY;
+        return new UrlEncodedFormEntity( listParams, StandardCharsets.UTF_8 );
     }
 }
@@ -44,7 +44,8 @@ import org.springframework.http.MediaType;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreUtils;
 
 /**
  * IdentityRestClientService
@@ -64,7 +65,6 @@ public final class HttpApiManagerAccessTransport extends HttpAccessTransport
     private static final String PARAMS_GRANT_TYPE_VALUE = "client_credentials";
 
     private static Logger _logger = Logger.getLogger( HttpApiManagerAccessTransport.class );
-    private static final ObjectMapper _objectMapper = new ObjectMapper( );
 
     /** URL for REST service apiManager */
     private String _strAccessManagerEndPointUrl;
@@ -133,12 +133,16 @@ public final class HttpApiManagerAccessTransport extends HttpAccessTransport
         mapHeadersRequest.put( HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE );
         mapHeadersRequest.put( HttpHeaders.AUTHORIZATION, TYPE_AUTHENTIFICATION_BASIC + " " + _strAccessManagerCredentials );
 
-        final Map<String, String> mapHeadersResponse = new HashMap<>( );
         String strOutput = StringUtils.EMPTY;
 
         try
         {
-            strOutput = this._httpClient.doPost( _strAccessManagerEndPointUrl, mapParams, null, null, mapHeadersRequest, mapHeadersResponse );
+            strOutput = post( _strAccessManagerEndPointUrl, mapParams, mapHeadersRequest );
+        }
+        catch( DeadlineExceededException e )
+        {
+            // the token refresh counts in the deadline of the call
+            throw e;
         }
         catch( Exception e )
         {
@@ -147,7 +151,7 @@ public final class HttpApiManagerAccessTransport extends HttpAccessTransport
 
         try
         {
-            JsonNode jsonNode = _objectMapper.readTree( strOutput );
+            JsonNode jsonNode = NotificationStoreUtils.readTree( strOutput );
             
             if ( ( jsonNode != null ) && jsonNode.has( PARAMS_ACCES_TOKEN ) )
             {
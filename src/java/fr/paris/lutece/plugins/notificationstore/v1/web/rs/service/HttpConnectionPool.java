@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Bounded pool of keep-alive HTTP connections, shared by all the verbs of a transport.
+ * A non-blocking client, with its own pool of the same size, is started on first use.
+ * Both clients use the proxy configuration of library-httpaccess, and never retry a request : the retries are made by the RetryPolicy.
+ */
+public class HttpConnectionPool implements Closeable
+{
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 50;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 30;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 60;
+    public static final long DEFAULT_CONNECTION_TIMEOUT = 5000;
+    public static final long DEFAULT_SOCKET_TIMEOUT = 30000;
+    public static final long DEFAULT_CONNECTION_REQUEST_TIMEOUT = 5000;
+
+    private final PoolingHttpClientConnectionManager _connectionManager;
+    private final CloseableHttpClient _httpClient;
+    private final RequestConfig _requestConfig;
+    private final int _nMaxTotalConnections;
+    private final int _nMaxConnectionsPerRoute;
+    private final long _lIdleConnectionTimeout;
+    private final long _lKeepAliveDuration;
+    private final HttpAccessConfiguration _configuration;
+
+    private PoolingAsyncClientConnectionManager _asyncConnectionManager;
+    private CloseableHttpAsyncClient _httpAsyncClient;
+
+    /**
+     * Constructor
+     * 
+     * @param nMaxTotalConnections
+     *            max number of connections in the pool
+     * @param nMaxConnectionsPerRoute
+     *            max number of connections per route (host)
+     * @param lIdleConnectionTimeout
+     *            idle time in seconds before a connection is evicted
+     * @param lKeepAliveDuration
+     *            max time in seconds a connection is kept alive between two requests
+     * @param lConnectionTimeout
+     *            connect timeout in milliseconds
+     * @param lSocketTimeout
+     *            response timeout in milliseconds
+     * @param lConnectionRequestTimeout
+     *            max wait in milliseconds for a connection from the pool
+     */
+    public HttpConnectionPool( int nMaxTotalConnections, int nMaxConnectionsPerRoute, long lIdleConnectionTimeout, long lKeepAliveDuration,
+            long lConnectionTimeout, long lSocketTimeout, long lConnectionRequestTimeout )
+    {
+        this( nMaxTotalConnections, nMaxConnectionsPerRoute, lIdleConnectionTimeout, lKeepAliveDuration, lConnectionTimeout, lSocketTimeout,
+                lConnectionRequestTimeout, new HttpAccessConfiguration( ) );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param nMaxTotalConnections
+     *            max number of connections in the pool
+     * @param nMaxConnectionsPerRoute
+     *            max number of connections per route (host)
+     * @param lIdleConnectionTimeout
+     *            idle time in seconds before a connection is evicted
+     * @param lKeepAliveDuration
+     *            max time in seconds a connection is kept alive between two requests
+     * @param lConnectionTimeout
+     *            connect timeout in milliseconds
+     * @param lSocketTimeout
+     *            response timeout in milliseconds
+     * @param lConnectionRequestTimeout
+     *            max wait in milliseconds for a connection from the pool
+     * @param configuration
+     *            the proxy configuration
+     */
+    public HttpConnectionPool( int nMaxTotalConnections, int nMaxConnectionsPerRoute, long lIdleConnectionTimeout, long lKeepAliveDuration,
+            long lConnectionTimeout, long lSocketTimeout, long lConnectionRequestTimeout, HttpAccessConfiguration configuration )
+    {
+        _configuration = configuration;
+        _nMaxTotalConnections = nMaxTotalConnections;
+        _nMaxConnectionsPerRoute = nMaxConnectionsPerRoute;
+        _lIdleConnectionTimeout = lIdleConnectionTimeout;
+        _lKeepAliveDuration = lKeepAliveDuration;
+
+        _connectionManager = new PoolingHttpClientConnectionManager( );
+        _connectionManager.setMaxTotal( nMaxTotalConnections );
+        _connectionManager.setDefaultMaxPerRoute( nMaxConnectionsPerRoute );
+
+        _requestConfig = RequestConfig.custom( )
+                .setConnectTimeout( Timeout.ofMilliseconds( lConnectionTimeout ) )
+                .setResponseTimeout( Timeout.ofMilliseconds( lSocketTimeout ) )
+                .setConnectionRequestTimeout( Timeout.ofMilliseconds( lConnectionRequestTimeout ) )
+                .build( );
+
+        HttpClientBuilder builder = HttpClientBuilder.create( )
+                .setConnectionManager( _connectionManager )
+                .setDefaultRequestConfig( _requestConfig )
+                .setKeepAliveStrategy( ( response, context ) -> TimeValue.of( lKeepAliveDuration, TimeUnit.SECONDS ) )
+                .evictExpiredConnections( )
+                .evictIdleConnections( TimeValue.of( lIdleConnectionTimeout, TimeUnit.SECONDS ) )
+                .disableAutomaticRetries( )
+                .useSystemProperties( );
+
+        if ( configuration.hasProxy( ) )
+        {
+            builder.setRoutePlanner( configuration.getRoutePlanner( ) );
+            if ( configuration.getCredentialsProvider( ) != null )
+            {
+                builder.setDefaultCredentialsProvider( configuration.getCredentialsProvider( ) );
+            }
+        }
+
+        _httpClient = builder.build( );
+    }
+
+    /**
+     * @return the pooled http client
+     */
+    public CloseableHttpClient getHttpClient( )
+    {
+        return _httpClient;
+    }
+
+    /**
+     * @return the non-blocking http client, started on first call
+     */
+    public synchronized CloseableHttpAsyncClient getHttpAsyncClient( )
+    {
+        if ( _httpAsyncClient == null )
+        {
+            _asyncConnectionManager = new PoolingAsyncClientConnectionManager( );
+            _asyncConnectionManager.setMaxTotal( _nMaxTotalConnections );
+            _asyncConnectionManager.setDefaultMaxPerRoute( _nMaxConnectionsPerRoute );
+
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom( )
+                    .setConnectionManager( _asyncConnectionManager )
+                    .setDefaultRequestConfig( _requestConfig )
+                    .setKeepAliveStrategy( ( response, context ) -> TimeValue.of( _lKeepAliveDuration, TimeUnit.SECONDS ) )
+                    .evictExpiredConnections( )
+                    .evictIdleConnections( TimeValue.of( _lIdleConnectionTimeout, TimeUnit.SECONDS ) )
+                    .disableAutomaticRetries( )
+                    .useSystemProperties( );
+
+            if ( _configuration.hasProxy( ) )
+            {
+                builder.setRoutePlanner( _configuration.getRoutePlanner( ) );
+                if ( _configuration.getCredentialsProvider( ) != null )
+                {
+                    builder.setDefaultCredentialsProvider( _configuration.getCredentialsProvider( ) );
+                }
+            }
+
+            _httpAsyncClient = builder.build( );
+            _httpAsyncClient.start( );
+        }
+
+        return _httpAsyncClient;
+    }
+
+    /**
+     * @return the statistics of the pool (leased, available, pending and max connections)
+     */
+    public PoolStats getStats( )
+    {
+        return _connectionManager.getTotalStats( );
+    }
+
+    /**
+     * @return the statistics of the non-blocking client pool, or null if this client is not started
+     */
+    public synchronized PoolStats getAsyncStats( )
+    {
+        return ( _asyncConnectionManager != null ) ? _asyncConnectionManager.getTotalStats( ) : null;
+    }
+
+    /**
+     * Close the pools and all their connections
+     */
+    @Override
+    public void close( ) throws IOException
+    {
+        _httpClient.close( );
+
+        synchronized( this )
+        {
+            if ( _httpAsyncClient != null )
+            {
+                _httpAsyncClient.close( );
+                _httpAsyncClient = null;
+                _asyncConnectionManager = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+/**
+ * Failure of an HTTP request, once the retries (if any) are exhausted
+ */
+public class HttpTransportException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int _nStatusCode;
+    private final int _nAttempts;
+
+    /**
+     * Constructor
+     * 
+     * @param strMessage
+     *            the message
+     * @param nStatusCode
+     *            the HTTP status of the last response (0 if no response was received)
+     * @param nAttempts
+     *            the number of attempts
+     * @param cause
+     *            the failure of the last attempt
+     */
+    public HttpTransportException( String strMessage, int nStatusCode, int nAttempts, Throwable cause )
+    {
+        super( strMessage, cause );
+        _nStatusCode = nStatusCode;
+        _nAttempts = nAttempts;
+    }
+
+    /**
+     * @return the HTTP status of the last response (0 if no response was received)
+     */
+    public int getStatusCode( )
+    {
+        return _nStatusCode;
+    }
+
+    /**
+     * @return the number of attempts
+     */
+    public int getAttempts( )
+    {
+        return _nAttempts;
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.Demand;
+import fr.paris.lutece.plugins.grubusiness.business.notification.Notification;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.CallDeadline;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.NotificationStoreExecutor;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.NotificationStoreTimeoutException;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreConstants;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreUtils;
+
+/**
+ * Collects the concurrent notification list requests of a customer during a short window (or up to a max number of demands),
+ * sends them as one demand list request, then gives each caller the notifications of its demand.
+ * <p>
+ * A batch is only sent at the end of its window unless it gets full : a lone request always waits the whole window, so the window
+ * must stay short (a few milliseconds) compared to the duration of the request itself.
+ * </p>
+ * <p>
+ * The scheduler thread only times the windows : the batches are sent by a pool of workers, so that the batches of the customers are
+ * sent concurrently.
+ * </p>
+ * <p>
+ * A notification of the response which has no demand, or whose demand type doesn't match the requested demand, can't be given to a
+ * caller : the demands it may belong to are loaded one by one with the demand loader (or fail without demand loader). Each caller gets
+ * its own notification list, the notifications themselves are shared by the callers of the same demand.
+ * </p>
+ */
+public class NotificationRequestCoalescer
+{
+    /**
+     * Bulk loader of the notifications of a demand list
+     */
+    @FunctionalInterface
+    public interface BulkLoader
+    {
+        /**
+         * @param strCustomerId
+         * @param listDemandPairs
+         * @param strNotificationType
+         * @return the notifications of the demands
+         * @throws NotificationException
+         */
+        NotificationResult load( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType ) throws NotificationException;
+    }
+
+    /**
+     * Loader of the notifications of a single demand
+     */
+    @FunctionalInterface
+    public interface DemandLoader
+    {
+        /**
+         * @param strCustomerId
+         * @param strIdDemand
+         * @param strIdDemandType
+         * @param strNotificationType
+         * @return the notifications of the demand
+         * @throws NotificationException
+         */
+        NotificationResult load( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType ) throws NotificationException;
+    }
+
+    private static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
+
+    private final BulkLoader _loader;
+    private final DemandLoader _demandLoader;
+    private final long _lWindowMillis;
+    private final int _nMaxPairs;
+    private final Map<String, Batch> _mapBatches = new HashMap<>( );
+    private final ScheduledExecutorService _scheduler;
+    private final ExecutorService _workers;
+
+    private final AtomicLong _requestCount = new AtomicLong( );
+    private final AtomicLong _batchCount = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param loader
+     *            the bulk loader
+     * @param lWindowMillis
+     *            the collect window, in milliseconds
+     * @param nMaxPairs
+     *            the max number of demands of a batch
+     */
+    public NotificationRequestCoalescer( BulkLoader loader, long lWindowMillis, int nMaxPairs )
+    {
+        this( loader, lWindowMillis, nMaxPairs, DEFAULT_MAX_CONCURRENT_BATCHES );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param loader
+     *            the bulk loader
+     * @param lWindowMillis
+     *            the collect window, in milliseconds
+     * @param nMaxPairs
+     *            the max number of demands of a batch
+     * @param nMaxConcurrentBatches
+     *            the max number of batches sent at the same time
+     */
+    public NotificationRequestCoalescer( BulkLoader loader, long lWindowMillis, int nMaxPairs, int nMaxConcurrentBatches )
+    {
+        this( loader, null, lWindowMillis, nMaxPairs, nMaxConcurrentBatches );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param loader
+     *            the bulk loader
+     * @param demandLoader
+     *            the loader of the demands whose notifications can't be attributed in a batch (may be null)
+     * @param lWindowMillis
+     *            the collect window, in milliseconds
+     * @param nMaxPairs
+     *            the max number of demands of a batch
+     * @param nMaxConcurrentBatches
+     *            the max number of batches sent at the same time
+     */
+    public NotificationRequestCoalescer( BulkLoader loader, DemandLoader demandLoader, long lWindowMillis, int nMaxPairs, int nMaxConcurrentBatches )
+    {
+        _loader = loader;
+        _demandLoader = demandLoader;
+        _lWindowMillis = lWindowMillis;
+        _nMaxPairs = nMaxPairs;
+        _scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "notificationstore-notification-batch-timer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+
+        AtomicInteger threadCount = new AtomicInteger( );
+        _workers = Executors.newFixedThreadPool( Math.max( 1, nMaxConcurrentBatches ), runnable -> {
+            Thread thread = new Thread( runnable, "notificationstore-notification-batch-" + threadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * get the notifications of a demand, through the batch of the customer
+     * 
+     * @param strCustomerId
+     * @param strIdDemand
+     * @param strIdDemandType
+     * @param strNotificationType
+     * @return the notifications of the demand, in a list of its own
+     * @throws NotificationException
+     */
+    public NotificationResult getListNotification( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType )
+            throws NotificationException
+    {
+        _requestCount.incrementAndGet( );
+
+        String strBatchKey = strCustomerId + '|' + strNotificationType;
+        String strPairKey = NotificationStoreUtils.demandPairKey( strIdDemand, strIdDemandType );
+        CompletableFuture<NotificationResult> future;
+        Batch batchToSend = null;
+
+        synchronized( _mapBatches )
+        {
+            Batch batch = _mapBatches.get( strBatchKey );
+            if ( batch == null )
+            {
+                batch = new Batch( strCustomerId, strNotificationType );
+                _mapBatches.put( strBatchKey, batch );
+
+                Batch scheduledBatch = batch;
+                _scheduler.schedule( ( ) -> send( strBatchKey, scheduledBatch ), _lWindowMillis, TimeUnit.MILLISECONDS );
+            }
+
+            future = batch._mapPending.get( strPairKey );
+            if ( future == null )
+            {
+                future = new CompletableFuture<>( );
+                batch._mapPending.put( strPairKey, future );
+
+                Map<String, String> mapPair = new HashMap<>( );
+                mapPair.put( NotificationStoreConstants.PAIR_DEMAND_ID, strIdDemand );
+                mapPair.put( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID, strIdDemandType );
+                batch._mapDemandPairs.put( strPairKey, mapPair );
+            }
+            if ( batch._mapPending.size( ) >= _nMaxPairs )
+            {
+                _mapBatches.remove( strBatchKey );
+                batchToSend = batch;
+            }
+        }
+
+        CallDeadline deadline = CallDeadline.current( );
+
+        // a full batch is sent by the caller which filled it, or by a worker when the caller has a deadline,
+        // so that the deadline doesn't abort the request of the other callers
+        if ( batchToSend != null )
+        {
+            if ( deadline != null )
+            {
+                dispatch( batchToSend );
+            }
+            else
+            {
+                flush( batchToSend );
+            }
+        }
+
+        try
+        {
+            return copy( ( deadline != null ) ? future.get( deadline.getRemaining( ), TimeUnit.MILLISECONDS ) : future.get( ) );
+        }
+        catch( TimeoutException e )
+        {
+            throw new NotificationStoreTimeoutException( "Batched notification request : deadline of " + deadline.getTimeout( ) + " ms exceeded",
+                    deadline.getTimeout( ) );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new NotificationException( e.getMessage( ) );
+        }
+        catch( ExecutionException e )
+        {
+            throw NotificationStoreExecutor.toNotificationException( e.getCause( ) );
+        }
+    }
+
+    /**
+     * @return the number of notification list requests
+     */
+    public long getRequestCount( )
+    {
+        return _requestCount.get( );
+    }
+
+    /**
+     * @return the number of demand list requests sent
+     */
+    public long getBatchCount( )
+    {
+        return _batchCount.get( );
+    }
+
+    /**
+     * stop the scheduler and the workers of the batches
+     */
+    public void shutdown( )
+    {
+        _scheduler.shutdown( );
+        _workers.shutdown( );
+    }
+
+    /**
+     * send a batch at the end of its window, unless it was already sent because full
+     * 
+     * @param strBatchKey
+     * @param batch
+     */
+    private void send( String strBatchKey, Batch batch )
+    {
+        synchronized( _mapBatches )
+        {
+            if ( _mapBatches.get( strBatchKey ) != batch )
+            {
+                return;
+            }
+            _mapBatches.remove( strBatchKey );
+        }
+
+        dispatch( batch );
+    }
+
+    /**
+     * send a batch from a worker, or fail its callers if the coalescer is shut down
+     * 
+     * @param batch
+     */
+    private void dispatch( Batch batch )
+    {
+        try
+        {
+            _workers.execute( ( ) -> flush( batch ) );
+        }
+        catch( RejectedExecutionException e )
+        {
+            NotificationException exception = new NotificationException( "Notification request coalescer shut down" );
+            for ( CompletableFuture<NotificationResult> pending : batch._mapPending.values( ) )
+            {
+                pending.completeExceptionally( exception );
+            }
+        }
+    }
+
+    /**
+     * request the notifications of all the demands of a batch and complete the callers
+     * 
+     * @param batch
+     */
+    private void flush( Batch batch )
+    {
+        _batchCount.incrementAndGet( );
+
+        Map<String, NotificationResult> mapResults = new HashMap<>( );
+        for ( String strPairKey : batch._mapPending.keySet( ) )
+        {
+            mapResults.put( strPairKey, new NotificationResult( ) );
+        }
+
+        // the demands which may have notifications not attributed to them
+        Set<String> setUnattributed = new HashSet<>( );
+
+        try
+        {
+            NotificationResult result = _loader.load( batch._strCustomerId, new ArrayList<>( batch._mapDemandPairs.values( ) ), batch._strNotificationType );
+
+            if ( result != null && result.getNotifications( ) != null )
+            {
+                for ( Notification notification : result.getNotifications( ) )
+                {
+                    Demand demand = notification.getDemand( );
+                    NotificationResult resultOfDemand = ( demand != null )
+                            ? mapResults.get( NotificationStoreUtils.demandPairKey( demand.getId( ), demand.getTypeId( ) ) )
+                            : null;
+
+                    if ( resultOfDemand != null )
+                    {
+                        resultOfDemand.getNotifications( ).add( notification );
+                    }
+                    else
+                    {
+                        setUnattributed.addAll( getCandidatePairs( batch, demand ) );
+                    }
+                }
+            }
+
+            for ( Map.Entry<String, CompletableFuture<NotificationResult>> pending : batch._mapPending.entrySet( ) )
+            {
+                if ( setUnattributed.contains( pending.getKey( ) ) )
+                {
+                    loadDemand( batch, pending.getKey( ), pending.getValue( ) );
+                }
+                else
+                {
+                    pending.getValue( ).complete( mapResults.get( pending.getKey( ) ) );
+                }
+            }
+        }
+        catch( Exception e )
+        {
+            for ( CompletableFuture<NotificationResult> pending : batch._mapPending.values( ) )
+            {
+                pending.completeExceptionally( e );
+            }
+        }
+    }
+
+    /**
+     * @param batch
+     * @param demand
+     *            the demand of a notification which matches no requested demand (may be null)
+     * @return the keys of the requested demands the notification may belong to : the demands with the same id, or all the demands if
+     *         the notification has no demand id. A notification of a demand which was not requested belongs to none.
+     */
+    private static List<String> getCandidatePairs( Batch batch, Demand demand )
+    {
+        List<String> listPairKeys = new ArrayList<>( );
+
+        for ( Map.Entry<String, Map<String, String>> pair : batch._mapDemandPairs.entrySet( ) )
+        {
+            if ( demand == null || demand.getId( ) == null || demand.getId( ).equals( pair.getValue( ).get( NotificationStoreConstants.PAIR_DEMAND_ID ) ) )
+            {
+                listPairKeys.add( pair.getKey( ) );
+            }
+        }
+
+        return listPairKeys;
+    }
+
+    /**
+     * load the notifications of a demand of a batch on its own, and complete its callers
+     * 
+     * @param batch
+     * @param strPairKey
+     * @param pending
+     */
+    private void loadDemand( Batch batch, String strPairKey, CompletableFuture<NotificationResult> pending )
+    {
+        Map<String, String> mapPair = batch._mapDemandPairs.get( strPairKey );
+        String strIdDemand = mapPair.get( NotificationStoreConstants.PAIR_DEMAND_ID );
+
+        if ( _demandLoader == null )
+        {
+            pending.completeExceptionally( new NotificationException( "Notifications of the demand " + strIdDemand + " can't be attributed in the batch" ) );
+            return;
+        }
+
+        try
+        {
+            pending.complete( _demandLoader.load( batch._strCustomerId, strIdDemand, mapPair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID ),
+                    batch._strNotificationType ) );
+        }
+        catch( Exception e )
+        {
+            pending.completeExceptionally( e );
+        }
+    }
+
+    /**
+     * @param result
+     * @return a result with a list of its own, holding the notifications of the result
+     */
+    private static NotificationResult copy( NotificationResult result )
+    {
+        NotificationResult copy = new NotificationResult( );
+        if ( result != null && result.getNotifications( ) != null )
+        {
+            copy.getNotifications( ).addAll( result.getNotifications( ) );
+        }
+
+        return copy;
+    }
+
+    /**
+     * Pending requests of a customer
+     */
+    private static final class Batch
+    {
+        private final String _strCustomerId;
+        private final String _strNotificationType;
+        private final Map<String, CompletableFuture<NotificationResult>> _mapPending = new LinkedHashMap<>( );
+        private final Map<String, Map<String, String>> _mapDemandPairs = new LinkedHashMap<>( );
+
+        Batch( String strCustomerId, String strNotificationType )
+        {
+            _strCustomerId = strCustomerId;
+            _strNotificationType = strNotificationType;
+        }
+    }
+}
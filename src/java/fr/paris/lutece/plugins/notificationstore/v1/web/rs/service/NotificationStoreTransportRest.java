@@ -36,6 +36,8 @@ package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import fr.paris.lutece.plugins.grubusiness.business.notification.ReassignNotificationsRequest;
 
@@ -44,20 +46,16 @@ import org.apache.log4j.Logger;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import fr.paris.lutece.plugins.grubusiness.business.demand.DemandCategory;
 import fr.paris.lutece.plugins.grubusiness.business.demand.TemporaryStatus;
 import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
 import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
 import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
 import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IAsyncHttpTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IAsyncNotificationStoreTransportProvider;
 import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
-import fr.paris.lutece.plugins.notificationstore.v1.web.service.INotificationStoreTransportProvider;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.NotificationStoreTimeoutException;
 import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreConstants;
 import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreUtils;
 import fr.paris.lutece.util.ReferenceList;
@@ -69,7 +67,7 @@ import fr.paris.lutece.util.http.SecurityUtil;
  * NotificationStoreTransportRest
  *
  */
-public class NotificationStoreTransportRest extends AbstractTransportRest implements INotificationStoreTransportProvider
+public class NotificationStoreTransportRest extends AbstractTransportRest implements IAsyncNotificationStoreTransportProvider
 {
 
     /**
@@ -79,8 +77,14 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
     /** URL for NotificationStore REST service */
     private String _strNotificationStoreEndPoint;
-    
-    private ObjectMapper _mapper = new ObjectMapper();
+
+    /** coalescing of the notification list requests */
+    private static final int DEFAULT_NOTIFICATION_BATCH_MAX_PAIRS = 50;
+    private static final int DEFAULT_NOTIFICATION_BATCH_MAX_CONCURRENT = 4;
+    private long _lNotificationBatchWindow = 0;
+    private int _nNotificationBatchMaxPairs = DEFAULT_NOTIFICATION_BATCH_MAX_PAIRS;
+    private int _nNotificationBatchMaxConcurrent = DEFAULT_NOTIFICATION_BATCH_MAX_CONCURRENT;
+    private NotificationRequestCoalescer _notificationCoalescer;
 
     /**
      * Simple Constructor
@@ -103,53 +107,81 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         _strNotificationStoreEndPoint = httpTransport.getApiEndPointUrl( );
     }
 
-    @Override
-    public DemandResult getListDemand( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult, String strNotificationType, String strDirectionDateOrderBy ) throws NotificationException
+    /**
+     * set the window (in milliseconds) during which the concurrent getListNotification calls of a customer 
+     * are collected and sent as one getNotificationsByDemandList request (0 : disabled)
+     *
+     * @param lNotificationBatchWindow
+     */
+    public void setNotificationBatchWindow( long lNotificationBatchWindow )
     {
-        _logger.debug( "Get list of demand for customer id " + strCustomerId );
+        this._lNotificationBatchWindow = lNotificationBatchWindow;
+    }
 
-        Map<String, String> mapParams = new HashMap<>( );
-        if ( StringUtils.isNotEmpty( strCustomerId ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
-        }
-        if ( StringUtils.isNotEmpty( strIdDemandType ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND_TYPE, strIdDemandType );
-        }
-        if ( StringUtils.isNotEmpty( strIndex ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_INDEX, strIndex );
-        }
-        
-        if ( StringUtils.isNotEmpty( strLimitResult ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIMIT, strLimitResult );
-        }
+    /**
+     * set the max number of demands of a getNotificationsByDemandList request built from getListNotification calls
+     *
+     * @param nNotificationBatchMaxPairs
+     */
+    public void setNotificationBatchMaxPairs( int nNotificationBatchMaxPairs )
+    {
+        this._nNotificationBatchMaxPairs = nNotificationBatchMaxPairs;
+    }
 
-        if ( StringUtils.isNotEmpty( strNotificationType ) )
+    /**
+     * set the max number of getNotificationsByDemandList requests built from getListNotification calls sent at the same time
+     *
+     * @param nNotificationBatchMaxConcurrent
+     */
+    public void setNotificationBatchMaxConcurrent( int nNotificationBatchMaxConcurrent )
+    {
+        this._nNotificationBatchMaxConcurrent = nNotificationBatchMaxConcurrent;
+    }
+
+    /**
+     * get the coalescer of the notification list requests, created on first use
+     *
+     * @return the coalescer, or null if disabled
+     */
+    protected synchronized NotificationRequestCoalescer getNotificationCoalescer( )
+    {
+        if ( _lNotificationBatchWindow > 0 && _notificationCoalescer == null )
         {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+            _notificationCoalescer = new NotificationRequestCoalescer( this::getNotificationsByDemandList, this::loadListNotification,
+                    _lNotificationBatchWindow, _nNotificationBatchMaxPairs, _nNotificationBatchMaxConcurrent );
         }
-        
-        if ( StringUtils.isNotEmpty( strDirectionDateOrderBy ) )
+
+        return _notificationCoalescer;
+    }
+
+    /**
+     * stop the coalescer of the notification list requests
+     */
+    public synchronized void shutdown( )
+    {
+        if ( _notificationCoalescer != null )
         {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_DIRECTION_DATE_ORDERBY, strDirectionDateOrderBy );
+            _notificationCoalescer.shutdown( );
+            _notificationCoalescer = null;
         }
-        
+    }
+
+    @Override
+    public DemandResult getListDemand( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult, String strNotificationType, String strDirectionDateOrderBy ) throws NotificationException
+    {
+        _logger.debug( "Get list of demand for customer id " + strCustomerId );
+
+        Map<String, String> mapParams = buildListDemandParams( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_LIST, mapParams, new HashMap<>( ) );
-
-            return NotificationStoreUtils.jsonToObject( strResponse, new TypeReference<DemandResult>( )
-            {
-            } );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_LIST, mapParams, new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.jsonToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_RESULT ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
 
     }
@@ -160,50 +192,18 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
     {
         _logger.debug( "Get list of demand by status for customer id " + strCustomerId );
 
-        Map<String, String> mapParams = new HashMap<>( );
-
-        if ( StringUtils.isNotEmpty( strCustomerId ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
-        }
-        if ( StringUtils.isNotEmpty( strIdDemandType ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIST_IDS_DEMAND_TYPE, strIdDemandType );
-        }
-        if ( StringUtils.isNotEmpty( strIndex ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_INDEX, strIndex );
-        }
-        if ( StringUtils.isNotEmpty( strLimitResult ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIMIT, strLimitResult );
-        }
-        if ( StringUtils.isNotEmpty( strListStatus ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIST_STATUS, strListStatus );
-        }
-        if ( StringUtils.isNotEmpty( strNotificationType ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
-        }
-        
-        if ( StringUtils.isNotEmpty( strCategoryCode ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CATEGORY_CODE, strCategoryCode );
-        }
+        Map<String, String> mapParams = buildListOfDemandByStatusParams( strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult,
+                strNotificationType, strCategoryCode );
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_STATUS, mapParams, new HashMap<>( ) );
-
-            return NotificationStoreUtils.jsonToObject( strResponse, new TypeReference<DemandResult>( )
-            {
-            } );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_STATUS, mapParams, new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.jsonToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_RESULT ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -212,38 +212,41 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
     {
         _logger.debug( "Get list of notification of demand id " + strIdDemand );
 
-        Map<String, String> mapParams = new HashMap<>( );
-        if ( StringUtils.isNotEmpty( strCustomerId ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
-        }
-        if ( StringUtils.isNotEmpty( strIdDemandType ) )
+        NotificationRequestCoalescer coalescer = getNotificationCoalescer( );
+        if ( coalescer != null && strIdDemand != null && strIdDemandType != null )
         {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND_TYPE, strIdDemandType );
-        }
-        if ( StringUtils.isNotEmpty( strIdDemand ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND, strIdDemand );
-        }
-        if ( StringUtils.isNotEmpty( strNotificationType ) )
-        {
-            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+            return coalescer.getListNotification( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
         }
 
+        return loadListNotification( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+    }
+
+    /**
+     * request the notifications of a demand, without batching
+     * 
+     * @param strCustomerId
+     * @param strIdDemand
+     * @param strIdDemandType
+     * @param strNotificationType
+     * @return the notifications of the demand
+     * @throws NotificationException
+     */
+    private NotificationResult loadListNotification( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType )
+            throws NotificationException
+    {
+        Map<String, String> mapParams = buildListNotificationParams( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION_LIST, mapParams, new HashMap<>( ) );
-
-            return NotificationStoreUtils.jsonToObject( strResponse, new TypeReference<NotificationResult>( )
-            {
-            } );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION_LIST, mapParams, new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.jsonToObject( inputStream, NotificationStoreUtils.TYPE_NOTIFICATION_RESULT ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
             _logger.error( "LibraryNotificationStore - Error HttpAccessTransport", e );
 
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -255,27 +258,16 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strJson = NotificationStoreUtils.getMapper( ).writeValueAsString( listDemandPairs );
-
-            UrlItem urlItem = new UrlItem( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION_LIST );
-            urlItem.addParameter( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
-
-            if ( StringUtils.isNotEmpty( strNotificationType ) )
-            {
-                urlItem.addParameter( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
-            }
-
-            String strResponse = _httpTransport.doPostJson( urlItem.getUrl( ), strJson, new HashMap<>( ) );
+            String strJson = NotificationStoreUtils.objectToJson( listDemandPairs );
 
-            return NotificationStoreUtils.jsonToObject( strResponse, new TypeReference<NotificationResult>( )
-            {
-            } );
+            return _httpTransport.doPostJsonStream( buildNotificationsByDemandListUrl( strCustomerId, strNotificationType ), strJson, new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.jsonToObject( inputStream, NotificationStoreUtils.TYPE_NOTIFICATION_RESULT ) );
         }
         catch( Exception e )
         {
             _logger.error( "LibraryNotificationStore - Error HttpAccessTransport", e );
 
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -291,7 +283,7 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -302,14 +294,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY_LIST, new HashMap<>( ), new HashMap<>( ) );
-
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<List<DemandCategory>>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY_LIST, new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_CATEGORY_LIST ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -320,14 +311,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY + nCategoryId , new HashMap<>( ), new HashMap<>( ) );
-            
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandCategory>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY + nCategoryId , new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_CATEGORY ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -357,12 +347,12 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         {
             String strResponse = _httpTransport.doPost( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY,  mapParams, mapHeaders );
             
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandCategory>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_CATEGORY );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -392,12 +382,12 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         {
             String strResponse = _httpTransport.doPut( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY + category.getId( ) , mapParams, mapHeaders );
 
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandCategory>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_CATEGORY );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -413,7 +403,7 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -424,14 +414,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS, new HashMap<>( ), new HashMap<>( ) );
-                    
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<List<TemporaryStatus>>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS, new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_TEMPORARY_STATUS_LIST ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
     
@@ -442,14 +431,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_GENERIC_STATUS , new HashMap<>( ), new HashMap<>( ) );
-                    
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<ReferenceList>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_GENERIC_STATUS , new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_REFERENCE_LIST ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -460,14 +448,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS + nStatusId , new HashMap<>( ), new HashMap<>( ) );
-            
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<TemporaryStatus>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS + nStatusId , new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_TEMPORARY_STATUS ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -478,16 +465,16 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String json = NotificationStoreUtils.getMapper( ).writeValueAsString( status );
+            String json = NotificationStoreUtils.objectToJson( status );
             
             String strResponse = _httpTransport.doPostJson( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS, json, new HashMap<>( ) );
             
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<TemporaryStatus>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_TEMPORARY_STATUS );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -498,15 +485,15 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String json = NotificationStoreUtils.getMapper( ).writeValueAsString( status );
+            String json = NotificationStoreUtils.objectToJson( status );
             String strResponse = _httpTransport.doPutJson( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS , json, new HashMap<>( ) );
 
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<TemporaryStatus>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_TEMPORARY_STATUS );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -522,7 +509,7 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }      
     }
     
@@ -533,14 +520,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES, new HashMap<>( ), new HashMap<>( ) );
-                    
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<List<DemandType>>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES, new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_TYPE_LIST ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -551,14 +537,13 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-            String strResponse = _httpTransport.doGet( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES + nDemandTypeId , new HashMap<>( ), new HashMap<>( ) );
-            
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandType>( ){} );
+            return _httpTransport.doGetStream( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES + nDemandTypeId , new HashMap<>( ), new HashMap<>( ),
+                    inputStream -> NotificationStoreUtils.resultToObject( inputStream, NotificationStoreUtils.TYPE_DEMAND_TYPE ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -578,19 +563,19 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
 
         try
         {
-        	String strJson = _mapper.writeValueAsString( demandType );
+        	String strJson = NotificationStoreUtils.objectToJson( demandType );
         	
             String strResponse = _httpTransport.doPostJson( 
             		_strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES, 
             		strJson, 
             		mapHeaders);
             
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandType>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_TYPE );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -605,19 +590,19 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         
         try
         {
-        	String strJson = _mapper.writeValueAsString( demandType );
+        	String strJson = NotificationStoreUtils.objectToJson( demandType );
         	
             String strResponse = _httpTransport.doPutJson( 
             		_strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES + demandType.getId( ), 
             		strJson, 
             		mapHeaders );
             
-            return NotificationStoreUtils.jsonToObject( getResult( strResponse ), new TypeReference<DemandType>( ){} );
+            return NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_TYPE );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -633,23 +618,10 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
     
-    /**
-     * 
-     * @param strResponse
-     * @return
-     * @throws JsonMappingException
-     * @throws JsonProcessingException
-     */
-    private String getResult ( String strResponse ) throws JsonProcessingException
-    {
-        JsonNode strJsonNode = NotificationStoreUtils.getMapper( ).readTree( strResponse );
-        return strJsonNode.get( NotificationStoreConstants.JSON_RESULT ).toString( );
-    }
-
     @Override
     public void deleteAllDemandsAndNotifications( String strCustomerId ) throws NotificationException
     {
@@ -662,7 +634,7 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
         }
     }
 
@@ -677,14 +649,334 @@ public class NotificationStoreTransportRest extends AbstractTransportRest implem
         	request.setOldCustomerId( oldCustomerId );
         	request.setNewCustomerId( newCustomerId );
 
-            String json = NotificationStoreUtils.getMapper( ).writeValueAsString( request );
+            String json = NotificationStoreUtils.objectToJson( request );
 
             _httpTransport.doPutJson( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION + NotificationStoreConstants.PATH_REASSIGN, json, new HashMap<>( ) );
         }
         catch( Exception e )
         {
             _logger.error( e );
-            throw new NotificationException( e.getMessage( ) );
+            throw toNotificationException( e );
+        }
+    }
+
+    /**
+     * build the parameters of the demand list request
+     * 
+     * @return the parameters
+     */
+    private static Map<String, String> buildListDemandParams( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult,
+            String strNotificationType, String strDirectionDateOrderBy )
+    {
+        Map<String, String> mapParams = new HashMap<>( );
+        if ( StringUtils.isNotEmpty( strCustomerId ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
         }
+        if ( StringUtils.isNotEmpty( strIdDemandType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND_TYPE, strIdDemandType );
+        }
+        if ( StringUtils.isNotEmpty( strIndex ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_INDEX, strIndex );
+        }
+        
+        if ( StringUtils.isNotEmpty( strLimitResult ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIMIT, strLimitResult );
+        }
+
+        if ( StringUtils.isNotEmpty( strNotificationType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+        }
+        
+        if ( StringUtils.isNotEmpty( strDirectionDateOrderBy ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_DIRECTION_DATE_ORDERBY, strDirectionDateOrderBy );
+        }
+
+        return mapParams;
+    }
+
+    /**
+     * build the parameters of the demand by status request
+     * 
+     * @return the parameters
+     */
+    private static Map<String, String> buildListOfDemandByStatusParams( String strCustomerId, String strListStatus, String strIdDemandType, String strIndex,
+            String strLimitResult, String strNotificationType, String strCategoryCode )
+    {
+        Map<String, String> mapParams = new HashMap<>( );
+
+        if ( StringUtils.isNotEmpty( strCustomerId ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
+        }
+        if ( StringUtils.isNotEmpty( strIdDemandType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIST_IDS_DEMAND_TYPE, strIdDemandType );
+        }
+        if ( StringUtils.isNotEmpty( strIndex ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_INDEX, strIndex );
+        }
+        if ( StringUtils.isNotEmpty( strLimitResult ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIMIT, strLimitResult );
+        }
+        if ( StringUtils.isNotEmpty( strListStatus ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_LIST_STATUS, strListStatus );
+        }
+        if ( StringUtils.isNotEmpty( strNotificationType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+        }
+        
+        if ( StringUtils.isNotEmpty( strCategoryCode ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CATEGORY_CODE, strCategoryCode );
+        }
+
+        return mapParams;
+    }
+
+    /**
+     * build the parameters of the notification list request
+     * 
+     * @return the parameters
+     */
+    private static Map<String, String> buildListNotificationParams( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType )
+    {
+        Map<String, String> mapParams = new HashMap<>( );
+        if ( StringUtils.isNotEmpty( strCustomerId ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
+        }
+        if ( StringUtils.isNotEmpty( strIdDemandType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND_TYPE, strIdDemandType );
+        }
+        if ( StringUtils.isNotEmpty( strIdDemand ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_ID_DEMAND, strIdDemand );
+        }
+        if ( StringUtils.isNotEmpty( strNotificationType ) )
+        {
+            mapParams.put( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+        }
+
+        return mapParams;
+    }
+
+    /**
+     * build the url of the notifications by demand list request
+     * 
+     * @return the url
+     */
+    private String buildNotificationsByDemandListUrl( String strCustomerId, String strNotificationType )
+    {
+        UrlItem urlItem = new UrlItem( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION_LIST );
+        urlItem.addParameter( NotificationStoreConstants.QUERY_PARAM_CUSTOMER_ID, strCustomerId );
+
+        if ( StringUtils.isNotEmpty( strNotificationType ) )
+        {
+            urlItem.addParameter( NotificationStoreConstants.QUERY_PARAM_NOTIFICATION_TYPE, strNotificationType );
+        }
+
+        return urlItem.getUrl( );
+    }
+
+    @Override
+    public CompletableFuture<DemandResult> getListDemandAsync( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult,
+            String strNotificationType, String strDirectionDateOrderBy )
+    {
+        _logger.debug( "Get list of demand (async) for customer id " + strCustomerId );
+
+        Map<String, String> mapParams = buildListDemandParams( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_LIST, mapParams ),
+                strResponse -> NotificationStoreUtils.jsonToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_RESULT ) );
+    }
+
+    @Override
+    public CompletableFuture<DemandResult> getListOfDemandByStatusAsync( String strCustomerId, String strListStatus, String strIdDemandType, String strIndex,
+            String strLimitResult, String strNotificationType, String strCategoryCode )
+    {
+        _logger.debug( "Get list of demand by status (async) for customer id " + strCustomerId );
+
+        Map<String, String> mapParams = buildListOfDemandByStatusParams( strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult,
+                strNotificationType, strCategoryCode );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_STATUS, mapParams ),
+                strResponse -> NotificationStoreUtils.jsonToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_RESULT ) );
+    }
+
+    @Override
+    public CompletableFuture<NotificationResult> getListNotificationAsync( String strCustomerId, String strIdDemand, String strIdDemandType,
+            String strNotificationType )
+    {
+        _logger.debug( "Get list of notification (async) of demand id " + strIdDemand );
+
+        Map<String, String> mapParams = buildListNotificationParams( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_NOTIFICATION_LIST, mapParams ),
+                strResponse -> NotificationStoreUtils.jsonToObject( strResponse, NotificationStoreUtils.TYPE_NOTIFICATION_RESULT ) );
+    }
+
+    @Override
+    public CompletableFuture<NotificationResult> getNotificationsByDemandListAsync( String strCustomerId, List<Map<String, String>> listDemandPairs,
+            String strNotificationType )
+    {
+        _logger.debug( "Get notifications by demand list (async) for customer id " + SecurityUtil.logForgingProtect( strCustomerId ) );
+
+        CompletableFuture<String> futureResponse;
+
+        try
+        {
+            String strJson = NotificationStoreUtils.objectToJson( listDemandPairs );
+            String strUrl = buildNotificationsByDemandListUrl( strCustomerId, strNotificationType );
+
+            if ( _httpTransport instanceof IAsyncHttpTransportProvider )
+            {
+                futureResponse = ( (IAsyncHttpTransportProvider) _httpTransport ).doPostJsonAsync( strUrl, strJson, new HashMap<>( ) );
+            }
+            else
+            {
+                futureResponse = AbstractHttpTransportDecorator.blockingCall( ( ) -> _httpTransport.doPostJson( strUrl, strJson, new HashMap<>( ) ) );
+            }
+        }
+        catch( Exception e )
+        {
+            futureResponse = new CompletableFuture<>( );
+            futureResponse.completeExceptionally( e );
+        }
+
+        return toResult( futureResponse, strResponse -> NotificationStoreUtils.jsonToObject( strResponse, NotificationStoreUtils.TYPE_NOTIFICATION_RESULT ) );
+    }
+
+    @Override
+    public CompletableFuture<List<DemandCategory>> getCategoriesListAsync( )
+    {
+        _logger.debug( "Get list of categories (async)" );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_CATEGORY_LIST, new HashMap<>( ) ),
+                strResponse -> NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_CATEGORY_LIST ) );
+    }
+
+    @Override
+    public CompletableFuture<List<DemandType>> getDemandTypesAsync( )
+    {
+        _logger.debug( "Get list of demand types (async)" );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_DEMAND_TYPES, new HashMap<>( ) ),
+                strResponse -> NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_DEMAND_TYPE_LIST ) );
+    }
+
+    @Override
+    public CompletableFuture<List<TemporaryStatus>> getStatusListAsync( )
+    {
+        _logger.debug( "Get list of status (async)" );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_STATUS, new HashMap<>( ) ),
+                strResponse -> NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_TEMPORARY_STATUS_LIST ) );
+    }
+
+    @Override
+    public CompletableFuture<ReferenceList> getGenericStatusListAsync( )
+    {
+        _logger.debug( "Get list of generic status (async)" );
+
+        return toResult( doGetAsync( _strNotificationStoreEndPoint + NotificationStoreConstants.PATH_GENERIC_STATUS, new HashMap<>( ) ),
+                strResponse -> NotificationStoreUtils.resultToObject( strResponse, NotificationStoreUtils.TYPE_REFERENCE_LIST ) );
+    }
+
+    /**
+     * make a non-blocking GET request if the http transport supports it,
+     * otherwise the request is made on the calling thread
+     * 
+     * @param strUrl
+     * @param mapParams
+     * @return the future response
+     */
+    private CompletableFuture<String> doGetAsync( String strUrl, Map<String, String> mapParams )
+    {
+        if ( _httpTransport instanceof IAsyncHttpTransportProvider )
+        {
+            return ( (IAsyncHttpTransportProvider) _httpTransport ).doGetAsync( strUrl, mapParams, new HashMap<>( ) );
+        }
+
+        return AbstractHttpTransportDecorator.blockingCall( ( ) -> _httpTransport.doGet( strUrl, mapParams, new HashMap<>( ) ) );
+    }
+
+    /**
+     * @param exception
+     *            the failure of a request
+     * @return the failure as a NotificationException, a NotificationStoreTimeoutException if the deadline of the call is exceeded
+     */
+    private static NotificationException toNotificationException( Throwable exception )
+    {
+        for ( Throwable cause = exception; cause != null; cause = cause.getCause( ) )
+        {
+            if ( cause instanceof DeadlineExceededException )
+            {
+                return new NotificationStoreTimeoutException( cause.getMessage( ), ( (DeadlineExceededException) cause ).getTimeout( ) );
+            }
+        }
+
+        return new NotificationException( exception.getMessage( ) );
+    }
+
+    /**
+     * parse the future response, failures are converted to NotificationException
+     * 
+     * @param futureResponse
+     * @param parser
+     * @return the future result
+     */
+    private static <T> CompletableFuture<T> toResult( CompletableFuture<String> futureResponse, ResponseParser<T> parser )
+    {
+        CompletableFuture<T> futureResult = new CompletableFuture<>( );
+
+        futureResponse.whenComplete( ( strResponse, exception ) -> {
+            if ( exception != null )
+            {
+                Throwable cause = ( exception instanceof CompletionException && exception.getCause( ) != null ) ? exception.getCause( ) : exception;
+                _logger.error( "LibraryNotificationStore - Error HttpAccessTransport", cause );
+                futureResult.completeExceptionally( toNotificationException( cause ) );
+                return;
+            }
+
+            try
+            {
+                futureResult.complete( parser.parse( strResponse ) );
+            }
+            catch( Exception e )
+            {
+                _logger.error( e );
+                futureResult.completeExceptionally( toNotificationException( e ) );
+            }
+        } );
+
+        // cancelling the result cancels the request
+        futureResult.whenComplete( ( result, exception ) -> {
+            if ( futureResult.isCancelled( ) )
+            {
+                futureResponse.cancel( true );
+            }
+        } );
+
+        return futureResult;
+    }
+
+    /**
+     * Response parser
+     */
+    @FunctionalInterface
+    private interface ResponseParser<T>
+    {
+        T parse( String strResponse ) throws Exception;
     }
 }
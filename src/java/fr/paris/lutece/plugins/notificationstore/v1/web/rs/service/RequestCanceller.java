@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Canceller of the blocking HTTP requests of a call run by another thread : the classic HTTP client ignores the interrupts, so the
+ * transport registers the abort of its running request, and cancel( ) aborts it (and the requests the call would send afterwards).
+ */
+final class RequestCanceller
+{
+    private static final ThreadLocal<RequestCanceller> CURRENT = new ThreadLocal<>( );
+
+    private Runnable _abort;
+    private boolean _bCancelled;
+
+    /**
+     * @return the canceller of the current call, or null if the call can't be cancelled
+     */
+    static RequestCanceller current( )
+    {
+        return CURRENT.get( );
+    }
+
+    /**
+     * Run a call with this canceller
+     * 
+     * @param call
+     *            the call
+     * @return the result of the call
+     * @throws Exception
+     *             the failure of the call
+     */
+    <T> T call( Callable<T> call ) throws Exception
+    {
+        RequestCanceller previous = CURRENT.get( );
+        CURRENT.set( this );
+
+        try
+        {
+            return call.call( );
+        }
+        finally
+        {
+            if ( previous != null )
+            {
+                CURRENT.set( previous );
+            }
+            else
+            {
+                CURRENT.remove( );
+            }
+        }
+    }
+
+    /**
+     * register the abort of the running request, run immediately if the call is already cancelled
+     * 
+     * @param abort
+     *            the abort of the request, null when the request is complete
+     */
+    void setAbort( Runnable abort )
+    {
+        synchronized( this )
+        {
+            _abort = abort;
+            if ( !_bCancelled || abort == null )
+            {
+                return;
+            }
+        }
+
+        abort.run( );
+    }
+
+    /**
+     * @return true if the call is cancelled
+     */
+    synchronized boolean isCancelled( )
+    {
+        return _bCancelled;
+    }
+
+    /**
+     * cancel the call : abort the running request, and the next ones
+     */
+    void cancel( )
+    {
+        Runnable abort;
+
+        synchronized( this )
+        {
+            _bCancelled = true;
+            abort = _abort;
+        }
+
+        if ( abort != null )
+        {
+            abort.run( );
+        }
+    }
+}
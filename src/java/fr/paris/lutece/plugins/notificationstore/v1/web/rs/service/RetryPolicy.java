@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+
+/**
+ * Retry policy of the HTTP requests : capped exponential backoff with jitter, within a total time budget.
+ * The idempotent requests (GET, PUT, DELETE) are retried on connection failures, connection resets and 5xx responses.
+ * The other requests (POST) are only retried when the connection could not be established, so they were not sent.
+ */
+public class RetryPolicy
+{
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF = 100;
+    public static final long DEFAULT_MAX_BACKOFF = 2000;
+    public static final double DEFAULT_MULTIPLIER = 2;
+    public static final long DEFAULT_TOTAL_BUDGET = 5000;
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>( Arrays.asList( "GET", "HEAD", "OPTIONS", "PUT", "DELETE" ) );
+
+    private int _nMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long _lInitialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long _lMaxBackoff = DEFAULT_MAX_BACKOFF;
+    private double _dMultiplier = DEFAULT_MULTIPLIER;
+    private long _lTotalBudget = DEFAULT_TOTAL_BUDGET;
+
+    /**
+     * set the max number of attempts of a request (retries included)
+     * 
+     * @param nMaxAttempts
+     */
+    public void setMaxAttempts( int nMaxAttempts )
+    {
+        _nMaxAttempts = nMaxAttempts;
+    }
+
+    /**
+     * set the delay (in milliseconds) before the first retry
+     * 
+     * @param lInitialBackoff
+     */
+    public void setInitialBackoff( long lInitialBackoff )
+    {
+        _lInitialBackoff = lInitialBackoff;
+    }
+
+    /**
+     * set the max delay (in milliseconds) between two attempts
+     * 
+     * @param lMaxBackoff
+     */
+    public void setMaxBackoff( long lMaxBackoff )
+    {
+        _lMaxBackoff = lMaxBackoff;
+    }
+
+    /**
+     * set the growth factor of the delay between two attempts
+     * 
+     * @param dMultiplier
+     */
+    public void setMultiplier( double dMultiplier )
+    {
+        _dMultiplier = dMultiplier;
+    }
+
+    /**
+     * set the max time (in milliseconds) spent on a request, retries included : no retry is started after it
+     * 
+     * @param lTotalBudget
+     */
+    public void setTotalBudget( long lTotalBudget )
+    {
+        _lTotalBudget = lTotalBudget;
+    }
+
+    /**
+     * get the delay before the next attempt of a failed request
+     * 
+     * @param strMethod
+     *            the HTTP method
+     * @param exception
+     *            the failure
+     * @param nAttempt
+     *            the number of attempts already made
+     * @param lElapsed
+     *            the time (in milliseconds) spent since the first attempt
+     * @return the delay in milliseconds, or -1 if the request must not be retried
+     */
+    public long getRetryDelay( String strMethod, IOException exception, int nAttempt, long lElapsed )
+    {
+        if ( nAttempt >= _nMaxAttempts || !isRetryable( strMethod, exception ) )
+        {
+            return -1;
+        }
+
+        // equal jitter : half of the exponential delay, plus a random part of the other half
+        double dBackoff = Math.min( _lMaxBackoff, _lInitialBackoff * Math.pow( _dMultiplier, nAttempt - 1.0 ) );
+        long lDelay = (long) ( dBackoff / 2 + ThreadLocalRandom.current( ).nextDouble( ) * dBackoff / 2 );
+
+        if ( _lTotalBudget > 0 && lElapsed + lDelay >= _lTotalBudget )
+        {
+            return -1;
+        }
+
+        return lDelay;
+    }
+
+    /**
+     * @param strMethod
+     *            the HTTP method
+     * @param exception
+     *            the failure
+     * @return true if the request can be retried after this failure
+     */
+    public boolean isRetryable( String strMethod, IOException exception )
+    {
+        // the request was not sent
+        if ( exception instanceof ConnectException || exception instanceof ConnectTimeoutException )
+        {
+            return true;
+        }
+
+        if ( !IDEMPOTENT_METHODS.contains( strMethod ) )
+        {
+            return false;
+        }
+
+        if ( exception instanceof HttpResponseException )
+        {
+            return ( (HttpResponseException) exception ).getStatusCode( ) >= 500;
+        }
+
+        return exception instanceof NoHttpResponseException || exception instanceof SocketException;
+    }
+}
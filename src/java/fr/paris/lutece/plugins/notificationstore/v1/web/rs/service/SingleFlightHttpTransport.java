@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.CallDeadline;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpResponseReader;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+
+/**
+ * Transport which shares one network call between identical GET requests in flight (same url, parameters and headers).
+ * The callers of doGetStream with the same response reader share the same parsed result, which must not be modified.
+ * A request with a call deadline is never shared by the other callers (its deadline would abort their call) : it waits at most until its deadline
+ * for an identical blocking request in flight, otherwise it is sent on its own.
+ */
+public class SingleFlightHttpTransport extends AbstractHttpTransportDecorator
+{
+    private final Map<String, CompletableFuture<Object>> _mapInFlight = new ConcurrentHashMap<>( );
+    private final AtomicLong _requestCount = new AtomicLong( );
+    private final AtomicLong _collapsedCount = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param transport
+     *            the decorated transport
+     */
+    public SingleFlightHttpTransport( IHttpTransportProvider transport )
+    {
+        super( transport );
+    }
+
+    /**
+     * @return the number of GET requests
+     */
+    public long getRequestCount( )
+    {
+        return _requestCount.get( );
+    }
+
+    /**
+     * @return the number of GET requests which shared the call of an identical request in flight
+     */
+    public long getCollapsedCount( )
+    {
+        return _collapsedCount.get( );
+    }
+
+    @Override
+    public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        try
+        {
+            return singleFlight( key( "GET", strEndPointUrl, mapParams, mapHeadersRequest ), ( ) -> super.doGet( strEndPointUrl, mapParams, mapHeadersRequest ) );
+        }
+        catch( IOException e )
+        {
+            // doGet doesn't throw IOException
+            throw new IllegalStateException( e );
+        }
+    }
+
+    @Override
+    public <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        // the result depends on the reader
+        String strKey = key( "GET " + responseReader.getClass( ).getName( ), strEndPointUrl, mapParams, mapHeadersRequest );
+
+        return singleFlight( strKey, ( ) -> super.doGetStream( strEndPointUrl, mapParams, mapHeadersRequest, responseReader ) );
+    }
+
+    @Override
+    public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        _requestCount.incrementAndGet( );
+
+        if ( CallDeadline.current( ) != null )
+        {
+            return super.doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest );
+        }
+
+        String strKey = key( "GET async", strEndPointUrl, mapParams, mapHeadersRequest );
+        CompletableFuture<Object> created = new CompletableFuture<>( );
+        CompletableFuture<Object> inFlight = _mapInFlight.putIfAbsent( strKey, created );
+
+        if ( inFlight != null )
+        {
+            _collapsedCount.incrementAndGet( );
+        }
+        else
+        {
+            inFlight = created;
+            super.doGetAsync( strEndPointUrl, mapParams, mapHeadersRequest ).whenComplete( ( strResponse, exception ) -> {
+                _mapInFlight.remove( strKey, created );
+                if ( exception != null )
+                {
+                    created.completeExceptionally( exception );
+                }
+                else
+                {
+                    created.complete( strResponse );
+                }
+            } );
+        }
+
+        // each caller gets its own future, so that a cancellation doesn't affect the other callers
+        return inFlight.thenApply( response -> (String) response );
+    }
+
+    /**
+     * run a call, or wait for the identical call in flight
+     * 
+     * @param strKey
+     *            the key of the request
+     * @param call
+     *            the call
+     * @return the result of the call
+     * @throws IOException
+     */
+    @SuppressWarnings( "unchecked" )
+    private <T> T singleFlight( String strKey, Call<T> call ) throws IOException
+    {
+        _requestCount.incrementAndGet( );
+
+        // a call which can end early (deadline or cancellation) follows the identical call in flight, but doesn't lead a shared call
+        CallDeadline deadline = CallDeadline.current( );
+        if ( deadline != null || RequestCanceller.current( ) != null )
+        {
+            CompletableFuture<Object> inFlight = _mapInFlight.get( strKey );
+            if ( inFlight == null )
+            {
+                return call.call( );
+            }
+
+            _collapsedCount.incrementAndGet( );
+            return (T) await( inFlight, deadline );
+        }
+
+        CompletableFuture<Object> created = new CompletableFuture<>( );
+        CompletableFuture<Object> inFlight = _mapInFlight.putIfAbsent( strKey, created );
+
+        if ( inFlight != null )
+        {
+            _collapsedCount.incrementAndGet( );
+            return (T) await( inFlight, null );
+        }
+
+        try
+        {
+            T result = call.call( );
+            created.complete( result );
+
+            return result;
+        }
+        catch( IOException | RuntimeException | Error e )
+        {
+            created.completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            _mapInFlight.remove( strKey, created );
+        }
+    }
+
+    /**
+     * wait for the result of the call in flight
+     * 
+     * @param inFlight
+     * @param deadline
+     *            the deadline of the caller, null if none
+     * @return the result
+     * @throws IOException
+     */
+    private static Object await( CompletableFuture<Object> inFlight, CallDeadline deadline ) throws IOException
+    {
+        try
+        {
+            return ( deadline != null ) ? inFlight.get( deadline.getRemaining( ), TimeUnit.MILLISECONDS ) : inFlight.get( );
+        }
+        catch( TimeoutException e )
+        {
+            throw new DeadlineExceededException( "GET request in flight", deadline.getTimeout( ), 0, null );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IOException( e );
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause( );
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException( cause );
+        }
+    }
+
+    /**
+     * build the key of a request
+     * 
+     * @param strMethod
+     * @param strEndPointUrl
+     * @param mapParams
+     * @param mapHeadersRequest
+     * @return the key
+     */
+    private static String key( String strMethod, String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+    {
+        StringBuilder sbKey = new StringBuilder( strMethod ).append( ' ' ).append( strEndPointUrl );
+
+        if ( mapParams != null )
+        {
+            sbKey.append( ' ' ).append( new TreeMap<>( mapParams ) );
+        }
+        if ( mapHeadersRequest != null )
+        {
+            sbKey.append( ' ' ).append( new TreeMap<>( mapHeadersRequest ) );
+        }
+
+        return sbKey.toString( );
+    }
+
+    /**
+     * A call which can throw an IOException
+     */
+    @FunctionalInterface
+    private interface Call<T>
+    {
+        T call( ) throws IOException;
+    }
+}
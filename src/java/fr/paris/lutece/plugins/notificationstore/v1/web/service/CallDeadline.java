@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+
+/**
+ * Deadline of a call to the NotificationStore.
+ * The deadline is bound to the current thread while the call runs, and applies to all the HTTP requests of the call (connection, request and
+ * token refresh), including the requests run by the NotificationStore executor on behalf of the call.
+ * 
+ * <pre>
+ * DemandResult result = CallDeadline.ofTimeout( 300 ).call( ( ) -> notificationStoreService.getListDemand( ... ) );
+ * </pre>
+ */
+public final class CallDeadline
+{
+    private static final ThreadLocal<CallDeadline> CURRENT = new ThreadLocal<>( );
+
+    private final long _lTimeout;
+    private final long _lDeadlineNanos;
+
+    /**
+     * Constructor
+     * 
+     * @param lTimeout
+     *            the timeout in milliseconds
+     */
+    private CallDeadline( long lTimeout )
+    {
+        _lTimeout = lTimeout;
+        _lDeadlineNanos = System.nanoTime( ) + TimeUnit.MILLISECONDS.toNanos( lTimeout );
+    }
+
+    /**
+     * @param lTimeout
+     *            the timeout in milliseconds, from now
+     * @return the deadline
+     */
+    public static CallDeadline ofTimeout( long lTimeout )
+    {
+        return new CallDeadline( lTimeout );
+    }
+
+    /**
+     * @return the deadline of the current call, or null if the call has no deadline
+     */
+    public static CallDeadline current( )
+    {
+        return CURRENT.get( );
+    }
+
+    /**
+     * @return the timeout in milliseconds
+     */
+    public long getTimeout( )
+    {
+        return _lTimeout;
+    }
+
+    /**
+     * @return the remaining time in milliseconds (0 if the deadline is exceeded)
+     */
+    public long getRemaining( )
+    {
+        return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( _lDeadlineNanos - System.nanoTime( ) ) );
+    }
+
+    /**
+     * @return true if the deadline is exceeded
+     */
+    public boolean isExpired( )
+    {
+        return System.nanoTime( ) - _lDeadlineNanos >= 0;
+    }
+
+    /**
+     * check the deadline
+     * 
+     * @param strOperation
+     *            the operation, for the message
+     * @throws NotificationStoreTimeoutException
+     *             if the deadline is exceeded
+     */
+    public void check( String strOperation ) throws NotificationStoreTimeoutException
+    {
+        if ( isExpired( ) )
+        {
+            throw new NotificationStoreTimeoutException( strOperation + " : deadline of " + _lTimeout + " ms exceeded", _lTimeout );
+        }
+    }
+
+    /**
+     * Run a call with this deadline (or the deadline of the enclosing call, if it is sooner)
+     * 
+     * @param call
+     *            the call
+     * @return the result of the call
+     * @throws NotificationException
+     *             the failure of the call, a NotificationStoreTimeoutException if the deadline is exceeded
+     */
+    public <T> T call( Call<T> call ) throws NotificationException
+    {
+        CallDeadline previous = CURRENT.get( );
+        CallDeadline deadline = ( previous != null && previous._lDeadlineNanos - _lDeadlineNanos < 0 ) ? previous : this;
+
+        deadline.check( "NotificationStore call" );
+        CURRENT.set( deadline );
+
+        try
+        {
+            return call.call( );
+        }
+        finally
+        {
+            restore( previous );
+        }
+    }
+
+    /**
+     * @param lTimeout
+     *            a timeout in milliseconds
+     * @return the timeout, reduced to the remaining time of the current call if it is sooner
+     */
+    public static long getRemaining( long lTimeout )
+    {
+        CallDeadline deadline = CURRENT.get( );
+
+        return ( deadline != null ) ? Math.min( lTimeout, deadline.getRemaining( ) ) : lTimeout;
+    }
+
+    /**
+     * Bind the deadline of the current call to a task run by another thread
+     * 
+     * @param task
+     *            the task
+     * @return the task, run with the deadline of the current call
+     */
+    public static <T> Callable<T> propagate( Callable<T> task )
+    {
+        CallDeadline deadline = CURRENT.get( );
+
+        if ( deadline == null )
+        {
+            return task;
+        }
+
+        return ( ) -> {
+            CallDeadline previous = CURRENT.get( );
+            CURRENT.set( deadline );
+            try
+            {
+                return task.call( );
+            }
+            finally
+            {
+                restore( previous );
+            }
+        };
+    }
+
+    /**
+     * @param previous
+     *            the deadline to restore on the current thread
+     */
+    private static void restore( CallDeadline previous )
+    {
+        if ( previous != null )
+        {
+            CURRENT.set( previous );
+        }
+        else
+        {
+            CURRENT.remove( );
+        }
+    }
+
+    /**
+     * A call to the NotificationStore
+     */
+    @FunctionalInterface
+    public interface Call<T>
+    {
+        T call( ) throws NotificationException;
+    }
+}
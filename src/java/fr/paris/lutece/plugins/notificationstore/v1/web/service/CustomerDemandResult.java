@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+
+/**
+ * Result of the demand lookup of one customer in a multi-customer lookup : the demands, or the error of this customer
+ */
+public class CustomerDemandResult
+{
+    private final String _strCustomerId;
+    private final DemandResult _demandResult;
+    private final NotificationException _error;
+
+    /**
+     * Constructor
+     * 
+     * @param strCustomerId
+     *            the customer id
+     * @param demandResult
+     *            the demands (null if the lookup failed)
+     * @param error
+     *            the error (null if the lookup succeeded)
+     */
+    public CustomerDemandResult( String strCustomerId, DemandResult demandResult, NotificationException error )
+    {
+        _strCustomerId = strCustomerId;
+        _demandResult = demandResult;
+        _error = error;
+    }
+
+    /**
+     * @return the customer id
+     */
+    public String getCustomerId( )
+    {
+        return _strCustomerId;
+    }
+
+    /**
+     * @return the demands, or null if the lookup failed
+     */
+    public DemandResult getDemandResult( )
+    {
+        return _demandResult;
+    }
+
+    /**
+     * @return the error, or null if the lookup succeeded
+     */
+    public NotificationException getError( )
+    {
+        return _error;
+    }
+
+    /**
+     * @return true if the lookup succeeded
+     */
+    public boolean isSuccess( )
+    {
+        return _error == null;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * LRU cache of results (demand lists, notifications...), by customer and query, with a time to live.
+ * The cache is bounded by a number of entries and by the estimated size of the cached results.
+ * The cached results are shared between callers and must not be modified.
+ * A result loaded before an invalidation of its customer is not cached : the generation is read before the load, and checked by put.
+ * 
+ * @param <V>
+ *            the type of the results
+ */
+public class CustomerResultCache<V>
+{
+    public static final long DEFAULT_ENTRY_BYTES = 1024;
+
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    private final long _lTtlMillis;
+    private final int _nMaxEntries;
+    private final long _lMaxBytes;
+    private final ToLongFunction<V> _sizeEstimator;
+
+    private final LinkedHashMap<String, CachedResult<V>> _mapEntries = new LinkedHashMap<>( 16, 0.75f, true );
+    private final Map<String, Set<String>> _mapKeysByCustomer = new HashMap<>( );
+    private long _lTotalBytes;
+
+    // generation : incremented at each invalidation, the last invalidations are kept by customer
+    private long _lGeneration;
+    private long _lInvalidationFloor;
+    private final LinkedHashMap<String, Long> _mapInvalidations = new LinkedHashMap<String, Long>( )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, Long> eldest )
+        {
+            if ( size( ) > _nMaxEntries )
+            {
+                // the puts which started before a forgotten invalidation are refused
+                _lInvalidationFloor = Math.max( _lInvalidationFloor, eldest.getValue( ) );
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final AtomicLong _hitCount = new AtomicLong( );
+    private final AtomicLong _missCount = new AtomicLong( );
+
+    /**
+     * Constructor
+     * 
+     * @param lTtl
+     *            time to live of the entries, in seconds
+     * @param nMaxEntries
+     *            max number of entries
+     * @param lMaxBytes
+     *            max estimated size of the cached results, in bytes (0 : no limit)
+     */
+    public CustomerResultCache( long lTtl, int nMaxEntries, long lMaxBytes )
+    {
+        this( lTtl, nMaxEntries, lMaxBytes, result -> DEFAULT_ENTRY_BYTES );
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param lTtl
+     *            time to live of the entries, in seconds
+     * @param nMaxEntries
+     *            max number of entries
+     * @param lMaxBytes
+     *            max estimated size of the cached results, in bytes (0 : no limit)
+     * @param sizeEstimator
+     *            cheap estimate of the size of a result, in bytes
+     */
+    public CustomerResultCache( long lTtl, int nMaxEntries, long lMaxBytes, ToLongFunction<V> sizeEstimator )
+    {
+        _lTtlMillis = lTtl * 1000;
+        _nMaxEntries = nMaxEntries;
+        _lMaxBytes = lMaxBytes;
+        _sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * Build the key of a query
+     * 
+     * @param queryParts
+     *            all the parameters of the query (null allowed)
+     * @return the key
+     */
+    public static String key( String... queryParts )
+    {
+        StringBuilder sbKey = new StringBuilder( );
+
+        for ( String strPart : queryParts )
+        {
+            if ( strPart != null )
+            {
+                sbKey.append( strPart );
+            }
+            sbKey.append( KEY_SEPARATOR );
+        }
+
+        return sbKey.toString( );
+    }
+
+    /**
+     * get a cached result
+     * 
+     * @param strKey
+     *            the query key
+     * @return the result, or null if absent or expired
+     */
+    public synchronized V get( String strKey )
+    {
+        CachedResult<V> cached = _mapEntries.get( strKey );
+
+        if ( cached == null || cached._lExpiresAt < System.currentTimeMillis( ) )
+        {
+            if ( cached != null )
+            {
+                remove( strKey );
+            }
+            _missCount.incrementAndGet( );
+            return null;
+        }
+
+        _hitCount.incrementAndGet( );
+
+        return cached._result;
+    }
+
+    /**
+     * @return the current generation, to read before loading a result
+     */
+    public synchronized long getGeneration( )
+    {
+        return _lGeneration;
+    }
+
+    /**
+     * cache a result, unless its customer has been invalidated since the result started loading
+     * 
+     * @param strCustomerId
+     *            the customer of the query
+     * @param strKey
+     *            the query key
+     * @param result
+     *            the result
+     * @param lGeneration
+     *            the generation read before loading the result
+     * @return true if the result is cached
+     */
+    public boolean put( String strCustomerId, String strKey, V result, long lGeneration )
+    {
+        if ( result == null )
+        {
+            return false;
+        }
+
+        long lBytes = _sizeEstimator.applyAsLong( result );
+        if ( _lMaxBytes > 0 && lBytes > _lMaxBytes )
+        {
+            return false;
+        }
+
+        synchronized( this )
+        {
+            Long lInvalidation = _mapInvalidations.get( strCustomerId );
+            if ( lGeneration < _lInvalidationFloor || ( lInvalidation != null && lInvalidation > lGeneration ) )
+            {
+                return false;
+            }
+
+            remove( strKey );
+
+            _mapEntries.put( strKey, new CachedResult<>( strCustomerId, result, System.currentTimeMillis( ) + _lTtlMillis, lBytes ) );
+            _mapKeysByCustomer.computeIfAbsent( strCustomerId, k -> new HashSet<>( ) ).add( strKey );
+            _lTotalBytes += lBytes;
+
+            // evict the least recently used entries
+            Iterator<Map.Entry<String, CachedResult<V>>> iterator = _mapEntries.entrySet( ).iterator( );
+            while ( ( _mapEntries.size( ) > _nMaxEntries || ( _lMaxBytes > 0 && _lTotalBytes > _lMaxBytes ) ) && iterator.hasNext( ) )
+            {
+                Map.Entry<String, CachedResult<V>> eldest = iterator.next( );
+                iterator.remove( );
+                forget( eldest.getKey( ), eldest.getValue( ) );
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * remove all the cached results of a customer
+     * 
+     * @param strCustomerId
+     */
+    public synchronized void invalidate( String strCustomerId )
+    {
+        _lGeneration++;
+        _mapInvalidations.remove( strCustomerId );
+        _mapInvalidations.put( strCustomerId, _lGeneration );
+
+        Set<String> setKeys = _mapKeysByCustomer.remove( strCustomerId );
+
+        if ( setKeys != null )
+        {
+            for ( String strKey : setKeys )
+            {
+                CachedResult<V> cached = _mapEntries.remove( strKey );
+                if ( cached != null )
+                {
+                    _lTotalBytes -= cached._lBytes;
+                }
+            }
+        }
+    }
+
+    /**
+     * remove all the cached results
+     */
+    public synchronized void clear( )
+    {
+        _lGeneration++;
+        _lInvalidationFloor = _lGeneration;
+        _mapInvalidations.clear( );
+        _mapEntries.clear( );
+        _mapKeysByCustomer.clear( );
+        _lTotalBytes = 0;
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int size( )
+    {
+        return _mapEntries.size( );
+    }
+
+    /**
+     * @return the estimated size of the cached results, in bytes
+     */
+    public synchronized long getEstimatedBytes( )
+    {
+        return _lTotalBytes;
+    }
+
+    /**
+     * @return the number of hits
+     */
+    public long getHitCount( )
+    {
+        return _hitCount.get( );
+    }
+
+    /**
+     * @return the number of misses
+     */
+    public long getMissCount( )
+    {
+        return _missCount.get( );
+    }
+
+    /**
+     * remove an entry
+     * 
+     * @param strKey
+     */
+    private void remove( String strKey )
+    {
+        CachedResult<V> cached = _mapEntries.remove( strKey );
+        if ( cached != null )
+        {
+            forget( strKey, cached );
+        }
+    }
+
+    /**
+     * update the customer index and the size after the removal of an entry
+     * 
+     * @param strKey
+     * @param cached
+     *            the removed entry (may be null)
+     */
+    private void forget( String strKey, CachedResult<?> cached )
+    {
+        if ( cached == null )
+        {
+            return;
+        }
+
+        _lTotalBytes -= cached._lBytes;
+
+        Set<String> setKeys = _mapKeysByCustomer.get( cached._strCustomerId );
+        if ( setKeys != null )
+        {
+            setKeys.remove( strKey );
+            if ( setKeys.isEmpty( ) )
+            {
+                _mapKeysByCustomer.remove( cached._strCustomerId );
+            }
+        }
+    }
+
+    /**
+     * Cached result
+     */
+    private static final class CachedResult<V>
+    {
+        private final String _strCustomerId;
+        private final V _result;
+        private final long _lExpiresAt;
+        private final long _lBytes;
+
+        CachedResult( String strCustomerId, V result, long lExpiresAt, long lBytes )
+        {
+            _strCustomerId = strCustomerId;
+            _result = result;
+            _lExpiresAt = lExpiresAt;
+            _lBytes = lBytes;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandDisplay;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+
+/**
+ * Lazy iterator over the demands of a paginated demand list.
+ * The next page is loaded in background while the current page is processed.
+ * The load failures are thrown as UncheckedNotificationException.
+ */
+public class DemandPageIterator implements Iterator<DemandDisplay>, AutoCloseable
+{
+    /** index of the first page */
+    public static final int FIRST_PAGE_INDEX = 1;
+
+    /**
+     * Loader of a page of demands
+     */
+    @FunctionalInterface
+    public interface PageLoader
+    {
+        /**
+         * @param nIndex
+         *            the page index
+         * @return the page
+         * @throws NotificationException
+         */
+        DemandResult loadPage( int nIndex ) throws NotificationException;
+    }
+
+    private final PageLoader _loader;
+    private final int _nPageSize;
+    private final NotificationStoreExecutor _executor;
+
+    private Iterator<DemandDisplay> _currentPage = Collections.emptyIterator( );
+    private CompletableFuture<DemandResult> _nextPage;
+    private int _nDeferredIndex;
+    private int _nNextIndex = FIRST_PAGE_INDEX;
+    private int _nLoadedCount;
+
+    /**
+     * Constructor : the first page is requested immediately
+     * 
+     * @param loader
+     *            the page loader
+     * @param nPageSize
+     *            the page size
+     * @param executor
+     *            the executor of the page loads
+     */
+    public DemandPageIterator( PageLoader loader, int nPageSize, NotificationStoreExecutor executor )
+    {
+        _loader = loader;
+        _nPageSize = nPageSize;
+        _executor = executor;
+
+        prefetch( );
+    }
+
+    @Override
+    public boolean hasNext( )
+    {
+        while ( !_currentPage.hasNext( ) )
+        {
+            if ( _nextPage == null && _nDeferredIndex == 0 )
+            {
+                return false;
+            }
+
+            DemandResult page = ( _nextPage != null ) ? await( _nextPage ) : loadDeferred( );
+            _nextPage = null;
+
+            List<DemandDisplay> listDemands = ( page != null ) ? page.getListDemandDisplay( ) : null;
+            if ( listDemands == null || listDemands.isEmpty( ) )
+            {
+                return false;
+            }
+
+            // the next page exists if this one is full, and the total count (when known) is not reached
+            _nLoadedCount += listDemands.size( );
+            if ( listDemands.size( ) >= _nPageSize && ( page.getNumberResult( ) <= 0 || _nLoadedCount < page.getNumberResult( ) ) )
+            {
+                prefetch( );
+            }
+
+            _currentPage = listDemands.iterator( );
+        }
+
+        return true;
+    }
+
+    @Override
+    public DemandDisplay next( )
+    {
+        if ( !hasNext( ) )
+        {
+            throw new NoSuchElementException( );
+        }
+
+        return _currentPage.next( );
+    }
+
+    /**
+     * Cancel the load of the next page
+     */
+    @Override
+    public void close( )
+    {
+        if ( _nextPage != null )
+        {
+            _nextPage.cancel( true );
+            _nextPage = null;
+        }
+        _nDeferredIndex = 0;
+    }
+
+    /**
+     * request the next page in background, or only when needed if the iterator is used from a call of the executor
+     * (the page would be loaded inline, ahead of time)
+     */
+    private void prefetch( )
+    {
+        int nIndex = _nNextIndex++;
+
+        if ( _executor.isExecutorThread( ) )
+        {
+            _nDeferredIndex = nIndex;
+        }
+        else
+        {
+            _nextPage = _executor.submit( ( ) -> _loader.loadPage( nIndex ) );
+        }
+    }
+
+    /**
+     * load the deferred page in the current thread
+     * 
+     * @return the page
+     */
+    private DemandResult loadDeferred( )
+    {
+        int nIndex = _nDeferredIndex;
+        _nDeferredIndex = 0;
+
+        try
+        {
+            return _loader.loadPage( nIndex );
+        }
+        catch( NotificationException e )
+        {
+            throw new UncheckedNotificationException( e );
+        }
+    }
+
+    /**
+     * wait for a page
+     * 
+     * @param page
+     * @return the page
+     */
+    private static DemandResult await( CompletableFuture<DemandResult> page )
+    {
+        try
+        {
+            return page.get( );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new UncheckedNotificationException( new NotificationException( "Interrupted while loading a page of demands" ) );
+        }
+        catch( ExecutionException e )
+        {
+            throw new UncheckedNotificationException( NotificationStoreExecutor.toNotificationException( e.getCause( ) ) );
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandCategory;
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.grubusiness.business.demand.TemporaryStatus;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
+import fr.paris.lutece.util.ReferenceList;
+
+/**
+ * NotificationStore transport with non-blocking read methods.
+ * The returned futures are completed exceptionally with a NotificationException if the call fails.
+ */
+public interface IAsyncNotificationStoreTransportProvider extends INotificationStoreTransportProvider
+{
+    /**
+     * List of demand by customer id, type demand id and index
+     * 
+     * @param strCustomerId
+     * @param strIdDemandType
+     * @param strIndex
+     *            (Not required)
+     * @param strLimitResult
+     * @param strNotificationType
+     * @param strDirectionDateOrderBy
+     * @return the future list of demand
+     */
+    CompletableFuture<DemandResult> getListDemandAsync( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult,
+            String strNotificationType, String strDirectionDateOrderBy );
+
+    /**
+     * List of demand by list of status, customer id, type demand id and index
+     * 
+     * @param strCustomerId
+     * @param strListStatus
+     *            (separated by , )
+     * @param strIdDemandType
+     * @param strIndex
+     *            (Not required)
+     * @param strLimitResult
+     * @param strNotificationType
+     * @param strCategoryCode
+     * @return the future list of demand
+     */
+    CompletableFuture<DemandResult> getListOfDemandByStatusAsync( String strCustomerId, String strListStatus, String strIdDemandType, String strIndex,
+            String strLimitResult, String strNotificationType, String strCategoryCode );
+
+    /**
+     * List of notification by demand id, customer id and type demand id
+     * 
+     * @param strCustomerId
+     * @param strIdDemand
+     * @param strIdDemandType
+     * @param strNotificationType
+     * @return the future list of notification
+     */
+    CompletableFuture<NotificationResult> getListNotificationAsync( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType );
+
+    /**
+     * List of notifications for a list of (demandId, demandTypeId) pairs and a customer id
+     *
+     * @param strCustomerId
+     * @param listDemandPairs
+     *            list of maps with keys "demandId" and "demandTypeId"
+     * @param strNotificationType
+     *            (Not required)
+     * @return the future list of notifications
+     */
+    CompletableFuture<NotificationResult> getNotificationsByDemandListAsync( String strCustomerId, List<Map<String, String>> listDemandPairs,
+            String strNotificationType );
+
+    /**
+     * Gets list of categories
+     * 
+     * @return the future list of categories
+     */
+    CompletableFuture<List<DemandCategory>> getCategoriesListAsync( );
+
+    /**
+     * Gets list of demand types
+     * 
+     * @return the future list of demand types
+     */
+    CompletableFuture<List<DemandType>> getDemandTypesAsync( );
+
+    /**
+     * Gets list of status
+     * 
+     * @return the future list of status
+     */
+    CompletableFuture<List<TemporaryStatus>> getStatusListAsync( );
+
+    /**
+     * Gets list of generic status
+     * 
+     * @return the future list of generic status
+     */
+    CompletableFuture<ReferenceList> getGenericStatusListAsync( );
+}
@@ -33,6 +33,10 @@
  */
 package fr.paris.lutece.plugins.notificationstore.v1.web.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -131,4 +135,62 @@ public interface IHttpTransportProvider
      * @return response list
      */
     public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest );
+
+    /**
+     * make a Get request on given url with parameters, and read the response body as a stream
+     * 
+     * @param strEndPointUrl
+     *            url
+     * @param mapParams
+     *            mapParams
+     * @param mapHeadersRequest
+     *            request header
+     * @param responseReader
+     *            the reader of the response body
+     * @return the object read from the response
+     * @throws IOException
+     *             if the request fails or the response can't be read
+     */
+    default <T> T doGetStream( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest,
+            IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        return readResponse( doGet( strEndPointUrl, mapParams, mapHeadersRequest ), responseReader );
+    }
+
+    /**
+     * make POST JSON request on given url with json and headers, and read the response body as a stream
+     * 
+     * @param strEndPointUrl
+     *            url to call
+     * @param json
+     *            json
+     * @param mapHeadersRequest
+     *            headers of the request
+     * @param responseReader
+     *            the reader of the response body
+     * @return the object read from the response
+     * @throws IOException
+     *             if the request fails or the response can't be read
+     */
+    default <T> T doPostJsonStream( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest, IHttpResponseReader<T> responseReader )
+            throws IOException
+    {
+        return readResponse( doPostJson( strEndPointUrl, json, mapHeadersRequest ), responseReader );
+    }
+
+    /**
+     * read a response body already loaded as a String (for the transports which don't stream the response)
+     * 
+     * @param strResponse
+     * @param responseReader
+     * @return the object read from the response
+     * @throws IOException
+     */
+    static <T> T readResponse( String strResponse, IHttpResponseReader<T> responseReader ) throws IOException
+    {
+        try ( InputStream inputStream = new ByteArrayInputStream( ( strResponse != null ? strResponse : "" ).getBytes( StandardCharsets.UTF_8 ) ) )
+        {
+            return responseReader.read( inputStream );
+        }
+    }
 }
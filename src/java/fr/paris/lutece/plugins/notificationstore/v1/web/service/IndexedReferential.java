@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable referential list, indexed by int id (open addressing on primitive keys) and by code.
+ * Lookups are O(1) and allocation-free.
+ *
+ * @param <T>
+ *            the referential type
+ */
+public final class IndexedReferential<T>
+{
+    private final List<T> _list;
+    private final int [ ] _keys;
+    private final Object [ ] _values;
+    private final int _nMask;
+    private final Map<String, T> _mapByCode;
+
+    /**
+     * Constructor
+     * 
+     * @param list
+     *            the referential list, copied (null is read as an empty list)
+     * @param idFunction
+     *            the id of an element
+     * @param codeFunction
+     *            the code of an element (may be null if the referential has no code)
+     */
+    public IndexedReferential( List<T> list, ToIntFunction<T> idFunction, Function<T, String> codeFunction )
+    {
+        _list = ( list != null ) ? Collections.unmodifiableList( new ArrayList<>( list ) ) : Collections.emptyList( );
+
+        int nCapacity = Integer.highestOneBit( Math.max( 2, _list.size( ) * 2 ) - 1 ) << 1;
+        _keys = new int [ nCapacity];
+        _values = new Object [ nCapacity];
+        _nMask = nCapacity - 1;
+
+        Map<String, T> mapByCode = new HashMap<>( );
+
+        for ( T element : _list )
+        {
+            if ( element == null )
+            {
+                continue;
+            }
+
+            // the first element wins, as with a sequential search
+            int nKey = idFunction.applyAsInt( element );
+            int nSlot = slot( nKey );
+            while ( _values [nSlot] != null && _keys [nSlot] != nKey )
+            {
+                nSlot = ( nSlot + 1 ) & _nMask;
+            }
+            if ( _values [nSlot] == null )
+            {
+                _keys [nSlot] = nKey;
+                _values [nSlot] = element;
+            }
+
+            String strCode = ( codeFunction != null ) ? codeFunction.apply( element ) : null;
+            if ( strCode != null )
+            {
+                mapByCode.putIfAbsent( strCode, element );
+            }
+        }
+
+        _mapByCode = Collections.unmodifiableMap( mapByCode );
+    }
+
+    /**
+     * @return the referential list (unmodifiable)
+     */
+    public List<T> getList( )
+    {
+        return _list;
+    }
+
+    /**
+     * get an element by id
+     * 
+     * @param nId
+     * @return the element, or null if not found
+     */
+    @SuppressWarnings( "unchecked" )
+    public T get( int nId )
+    {
+        int nSlot = slot( nId );
+
+        while ( _values [nSlot] != null )
+        {
+            if ( _keys [nSlot] == nId )
+            {
+                return (T) _values [nSlot];
+            }
+            nSlot = ( nSlot + 1 ) & _nMask;
+        }
+
+        return null;
+    }
+
+    /**
+     * get an element by code
+     * 
+     * @param strCode
+     * @return the element, or null if not found
+     */
+    public T getByCode( String strCode )
+    {
+        return ( strCode != null ) ? _mapByCode.get( strCode ) : null;
+    }
+
+    /**
+     * @param nKey
+     * @return the first slot of the key
+     */
+    private int slot( int nKey )
+    {
+        int nHash = nKey * 0x9E3779B9;
+
+        return ( nHash ^ ( nHash >>> 16 ) ) & _nMask;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Executor of independent NotificationStore calls.
+ * Uses virtual threads (JDK 21+) when requested and available, bounded by a semaphore,
+ * otherwise a fixed pool of platform threads.
+ * The calls submitted from a call already running on this executor are run inline, so that a nested
+ * fan-out can't wait for threads (or permits) held by its callers.
+ */
+public class NotificationStoreExecutor
+{
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 16;
+
+    private static final String THREAD_NAME_PREFIX = "notificationstore-call-";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger( );
+    private static final ThreadLocal<NotificationStoreExecutor> CURRENT_EXECUTOR = new ThreadLocal<>( );
+
+    private final ExecutorService _executorService;
+    private final Semaphore _semaphore;
+    private final boolean _bVirtualThreads;
+
+    /**
+     * Constructor
+     * 
+     * @param bVirtualThreads
+     *            use virtual threads if the JVM supports them
+     * @param nMaxConcurrentCalls
+     *            max number of calls running at the same time
+     */
+    public NotificationStoreExecutor( boolean bVirtualThreads, int nMaxConcurrentCalls )
+    {
+        ExecutorService executorService = bVirtualThreads ? newVirtualThreadExecutor( ) : null;
+
+        if ( executorService != null )
+        {
+            _executorService = executorService;
+            _semaphore = new Semaphore( nMaxConcurrentCalls );
+            _bVirtualThreads = true;
+        }
+        else
+        {
+            _executorService = Executors.newFixedThreadPool( nMaxConcurrentCalls, runnable -> {
+                Thread thread = new Thread( runnable, THREAD_NAME_PREFIX + THREAD_COUNTER.incrementAndGet( ) );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            _semaphore = null;
+            _bVirtualThreads = false;
+        }
+    }
+
+    /**
+     * @return true if the calls run on virtual threads
+     */
+    public boolean isVirtualThreads( )
+    {
+        return _bVirtualThreads;
+    }
+
+    /**
+     * @return true if the current thread runs a call of this executor
+     */
+    public boolean isExecutorThread( )
+    {
+        return CURRENT_EXECUTOR.get( ) == this;
+    }
+
+    /**
+     * Submit a call, run with the deadline of the current call (if any).
+     * The call is run inline when submitted from a call of this executor.
+     * 
+     * @param call
+     *            the call
+     * @return the future result
+     */
+    public <T> CompletableFuture<T> submit( Callable<T> call )
+    {
+        CompletableFuture<T> future = new CompletableFuture<>( );
+
+        if ( isExecutorThread( ) )
+        {
+            try
+            {
+                future.complete( call.call( ) );
+            }
+            catch( Exception e )
+            {
+                future.completeExceptionally( e );
+            }
+            return future;
+        }
+
+        Callable<T> task = CallDeadline.propagate( call );
+
+        _executorService.execute( ( ) -> {
+            try
+            {
+                if ( _semaphore != null )
+                {
+                    _semaphore.acquire( );
+                }
+
+                CURRENT_EXECUTOR.set( this );
+                try
+                {
+                    future.complete( task.call( ) );
+                }
+                finally
+                {
+                    CURRENT_EXECUTOR.remove( );
+                    if ( _semaphore != null )
+                    {
+                        _semaphore.release( );
+                    }
+                }
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                future.completeExceptionally( e );
+            }
+            catch( Exception e )
+            {
+                future.completeExceptionally( e );
+            }
+        } );
+
+        return future;
+    }
+
+    /**
+     * Run the calls and wait until all of them are complete
+     * 
+     * @param listCalls
+     *            the calls
+     * @return the results, in the order of the calls
+     * @throws NotificationException
+     *             the first failure, once all the calls are complete
+     */
+    public <T> List<T> invokeAll( List<? extends Callable<T>> listCalls ) throws NotificationException
+    {
+        List<CompletableFuture<T>> listFutures = new ArrayList<>( listCalls.size( ) );
+
+        for ( Callable<T> call : listCalls )
+        {
+            listFutures.add( submit( call ) );
+        }
+
+        return join( listFutures );
+    }
+
+    /**
+     * Wait until all the futures are complete
+     * 
+     * @param listFutures
+     *            the futures
+     * @return the results, in the order of the futures
+     * @throws NotificationException
+     *             the first failure, once all the futures are complete
+     */
+    public static <T> List<T> join( List<CompletableFuture<T>> listFutures ) throws NotificationException
+    {
+        List<T> listResults = new ArrayList<>( listFutures.size( ) );
+        NotificationException firstFailure = null;
+
+        for ( CompletableFuture<T> future : listFutures )
+        {
+            try
+            {
+                listResults.add( future.get( ) );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new NotificationException( "Interrupted while waiting for NotificationStore calls" );
+            }
+            catch( ExecutionException e )
+            {
+                listResults.add( null );
+                if ( firstFailure == null )
+                {
+                    firstFailure = toNotificationException( e.getCause( ) );
+                }
+            }
+        }
+
+        if ( firstFailure != null )
+        {
+            throw firstFailure;
+        }
+
+        return listResults;
+    }
+
+    /**
+     * Stop the executor
+     */
+    public void shutdown( )
+    {
+        _executorService.shutdown( );
+    }
+
+    /**
+     * @param exception
+     * @return the exception as a NotificationException
+     */
+    public static NotificationException toNotificationException( Throwable exception )
+    {
+        if ( exception instanceof NotificationException )
+        {
+            return (NotificationException) exception;
+        }
+
+        return new NotificationException( exception != null ? exception.getMessage( ) : null );
+    }
+
+    /**
+     * Create a virtual thread per task executor by reflection, to keep the library compatible with older JVMs
+     * 
+     * @return the executor, or null if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor( )
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            AppLogService.info( "NotificationStore - virtual threads not available, using platform threads" );
+            return null;
+        }
+    }
+}
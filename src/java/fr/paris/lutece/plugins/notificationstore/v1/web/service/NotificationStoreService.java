@@ -33,16 +33,41 @@
  */
 package fr.paris.lutece.plugins.notificationstore.v1.web.service;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import fr.paris.lutece.plugins.grubusiness.business.demand.DemandCategory;
 import fr.paris.lutece.plugins.grubusiness.business.demand.TemporaryStatus;
 import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.grubusiness.business.notification.Notification;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandDisplay;
 import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
 import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
 import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.ReferentialSnapshot.Part;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreConstants;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreUtils;
 import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.util.ReferenceList;
@@ -54,23 +79,84 @@ public class NotificationStoreService extends AbstractCacheableService
 {
 
     private static final String SERVICE_NAME = "NotificationStoreCacheService";
-    private static final String STATUS_LIST_KEY = "StatusListKey";
-    private static final String CATEGORY_LIST_KEY = "CategoryListKey";
-    private static final String DEMANDTYPE_LIST_KEY = "DemandTypeListKey";
-    private static final String GENERICSTATUS_LIST_KEY = "GenericStatusListKey";
-    private static boolean flushCategoryCache = false;
-    private static boolean flushDemandTypeCache = false;
-    private static boolean flushStatusCache = false;
+
+    /** referential data, replaced atomically */
+    private final AtomicReference<ReferentialSnapshot> _snapshot = new AtomicReference<>( ReferentialSnapshot.EMPTY );
+    private final Object [ ] _loadLocks = new Object [ ReferentialSnapshot.Part.values( ).length ];
+
+    /** background refresh of the referential data (stale-while-revalidate) */
+    private static final long DEFAULT_REFRESH_INTERVAL = 300;
+    private boolean _bBackgroundRefreshEnabled = false;
+    private long _lRefreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private final AtomicBoolean [ ] _refreshPending = new AtomicBoolean [ ReferentialSnapshot.Part.values( ).length ];
+    private ScheduledExecutorService _refreshScheduler;
+
+    /** max age of the referential data, after which it is reloaded on access */
+    private static final long DEFAULT_REFERENTIAL_MAX_AGE = 300;
+    private long _lReferentialMaxAge = DEFAULT_REFERENTIAL_MAX_AGE;
+
+    /** last-known-good fallback when the NotificationStore is down */
+    private static final long DEFAULT_FAILURE_BACKOFF = 30;
+    private long _lMaxStaleness = 0;
+    private long _lFailureBackoff = DEFAULT_FAILURE_BACKOFF;
+    private final AtomicLong [ ] _lastFailures = new AtomicLong [ ReferentialSnapshot.Part.values( ).length ];
+    private final AtomicLong _staleServedCount = new AtomicLong( );
+    private final AtomicLong _loadFailureCount = new AtomicLong( );
+
+    /** warm-up of the referential data */
+    private static final long DEFAULT_WARMUP_TIMEOUT = 30;
+    private long _lWarmUpTimeout = DEFAULT_WARMUP_TIMEOUT;
+
+    /** local copy of the referential snapshot, for a fast cold start */
+    private ReferentialSnapshotFile _snapshotFile;
+    private volatile boolean _bSnapshotRestored = false;
+
+    /** cache of the demand lists by customer */
+    private static final long DEFAULT_DEMAND_CACHE_TTL = 30;
+    private static final int DEFAULT_DEMAND_CACHE_MAX_ENTRIES = 1000;
+    private static final long DEFAULT_DEMAND_CACHE_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int DEFAULT_NOTIFICATION_CACHE_MAX_ENTRIES = 10000;
+    private static final long ESTIMATED_RESULT_BYTES = 64;
+    private static final long ESTIMATED_DEMAND_BYTES = 512;
+    private static final long ESTIMATED_NOTIFICATION_BYTES = 2048;
+    private boolean _bDemandCacheEnabled = false;
+    private long _lDemandCacheTtl = DEFAULT_DEMAND_CACHE_TTL;
+    private int _nDemandCacheMaxEntries = DEFAULT_DEMAND_CACHE_MAX_ENTRIES;
+    private long _lDemandCacheMaxBytes = DEFAULT_DEMAND_CACHE_MAX_BYTES;
+    private CustomerResultCache<DemandResult> _demandCache;
+
+    /** cache of the notifications by customer and demand */
+    private boolean _bNotificationCacheEnabled = false;
+    private long _lNotificationCacheTtl = DEFAULT_DEMAND_CACHE_TTL;
+    private int _nNotificationCacheMaxEntries = DEFAULT_NOTIFICATION_CACHE_MAX_ENTRIES;
+    private long _lNotificationCacheMaxBytes = DEFAULT_DEMAND_CACHE_MAX_BYTES;
+    private CustomerResultCache<List<Notification>> _notificationCache;
+
+    /** page size of the demand streams */
+    private static final int DEFAULT_DEMAND_PAGE_SIZE = 50;
+    private int _nDemandPageSize = DEFAULT_DEMAND_PAGE_SIZE;
+
+    /** chunks of the notification requests by demand list */
+    private static final int DEFAULT_NOTIFICATION_CHUNK_SIZE = 100;
+    private static final int PAIR_JSON_OVERHEAD = 34;
+    private int _nNotificationChunkSize = DEFAULT_NOTIFICATION_CHUNK_SIZE;
+    private int _nNotificationChunkMaxBytes = 0;
 
     /** transport provider */
     private INotificationStoreTransportProvider _transportProvider;
 
+    /** executor of parallel calls */
+    private boolean _bVirtualThreadsEnabled = false;
+    private int _nMaxConcurrentCalls = NotificationStoreExecutor.DEFAULT_MAX_CONCURRENT_CALLS;
+    private NotificationStoreExecutor _executor;
+
     /**
      * Simple Constructor
      */
     public NotificationStoreService( )
     {
 	super( );
+	initLoadLocks( );
 	initCache( );
     }
 
@@ -84,9 +170,23 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	super( );
 	this._transportProvider = transportProvider;
+	initLoadLocks( );
 	initCache( );
     }
 
+    /**
+     * init the locks of the referential loads
+     */
+    private void initLoadLocks( )
+    {
+	for ( int i = 0; i < _loadLocks.length; i++ )
+	{
+	    _loadLocks [i] = new Object( );
+	    _refreshPending [i] = new AtomicBoolean( );
+	    _lastFailures [i] = new AtomicLong( );
+	}
+    }
+
     /**
      * setter of transportProvider parameter
      *
@@ -98,6 +198,372 @@ public class NotificationStoreService extends AbstractCacheableService
 	this._transportProvider = transportProvider;
     }
 
+    /**
+     * run the parallel calls on virtual threads (JDK 21+), instead of a pool of platform threads
+     *
+     * @param bVirtualThreadsEnabled
+     */
+    public void setVirtualThreadsEnabled( boolean bVirtualThreadsEnabled )
+    {
+	this._bVirtualThreadsEnabled = bVirtualThreadsEnabled;
+    }
+
+    /**
+     * set the max number of calls running at the same time
+     *
+     * @param nMaxConcurrentCalls
+     */
+    public void setMaxConcurrentCalls( int nMaxConcurrentCalls )
+    {
+	this._nMaxConcurrentCalls = nMaxConcurrentCalls;
+    }
+
+    /**
+     * Keep serving the current referential data while it is reloaded in background,
+     * periodically and after each mutation
+     *
+     * @param bBackgroundRefreshEnabled
+     */
+    public void setBackgroundRefreshEnabled( boolean bBackgroundRefreshEnabled )
+    {
+	this._bBackgroundRefreshEnabled = bBackgroundRefreshEnabled;
+    }
+
+    /**
+     * set the interval (in seconds) of the background refresh of the referential data (0 : only after mutations)
+     *
+     * @param lRefreshInterval
+     */
+    public void setRefreshInterval( long lRefreshInterval )
+    {
+	this._lRefreshInterval = lRefreshInterval;
+    }
+
+    /**
+     * set the max age (in seconds) of the referential data : older data is reloaded on next access,
+     * so that the changes made on another node are seen (0 : reloaded only after a mutation or a cache reset)
+     *
+     * @param lReferentialMaxAge
+     */
+    public void setReferentialMaxAge( long lReferentialMaxAge )
+    {
+	this._lReferentialMaxAge = lReferentialMaxAge;
+    }
+
+    /**
+     * set the max age (in seconds) of the last-known-good referential data served while the NotificationStore is down (0 : no limit)
+     *
+     * @param lMaxStaleness
+     */
+    public void setMaxStaleness( long lMaxStaleness )
+    {
+	this._lMaxStaleness = lMaxStaleness;
+    }
+
+    /**
+     * set the delay (in seconds) without any reload of a referential part after a failed load
+     *
+     * @param lFailureBackoff
+     */
+    public void setFailureBackoff( long lFailureBackoff )
+    {
+	this._lFailureBackoff = lFailureBackoff;
+    }
+
+    /**
+     * Set the local file where the referential snapshot is persisted.
+     * The snapshot stored in the file is loaded by the warm-up or at the first access, then revalidated in background.
+     *
+     * @param strSnapshotFile
+     *            the path of the file
+     */
+    public void setSnapshotFile( String strSnapshotFile )
+    {
+	this._snapshotFile = new ReferentialSnapshotFile( strSnapshotFile );
+    }
+
+    /**
+     * set the max time (in seconds) the warm-up waits for the referential data
+     *
+     * @param lWarmUpTimeout
+     */
+    public void setWarmUpTimeout( long lWarmUpTimeout )
+    {
+	this._lWarmUpTimeout = lWarmUpTimeout;
+    }
+
+    /**
+     * Cache the demand lists of each customer (getListDemand, getListOfDemandByStatus).
+     * The cache of a customer is cleared by deleteNotificationByCuid, deleteAllDemandsAndNotifications and reassignNotifications.
+     *
+     * @param bDemandCacheEnabled
+     */
+    public void setDemandCacheEnabled( boolean bDemandCacheEnabled )
+    {
+	this._bDemandCacheEnabled = bDemandCacheEnabled;
+    }
+
+    /**
+     * set the time to live (in seconds) of the cached demand lists
+     *
+     * @param lDemandCacheTtl
+     */
+    public void setDemandCacheTtl( long lDemandCacheTtl )
+    {
+	this._lDemandCacheTtl = lDemandCacheTtl;
+    }
+
+    /**
+     * set the max number of cached demand lists
+     *
+     * @param nDemandCacheMaxEntries
+     */
+    public void setDemandCacheMaxEntries( int nDemandCacheMaxEntries )
+    {
+	this._nDemandCacheMaxEntries = nDemandCacheMaxEntries;
+    }
+
+    /**
+     * set the max estimated size (in bytes) of the cached demand lists (0 : no limit)
+     *
+     * @param lDemandCacheMaxBytes
+     */
+    public void setDemandCacheMaxBytes( long lDemandCacheMaxBytes )
+    {
+	this._lDemandCacheMaxBytes = lDemandCacheMaxBytes;
+    }
+
+    /**
+     * get the cache of the demand lists, created on first use
+     *
+     * @return the cache, or null if disabled
+     */
+    protected synchronized CustomerResultCache<DemandResult> getDemandCache( )
+    {
+	if ( _bDemandCacheEnabled && _demandCache == null )
+	{
+	    _demandCache = new CustomerResultCache<>( _lDemandCacheTtl, _nDemandCacheMaxEntries, _lDemandCacheMaxBytes,
+		    result -> ESTIMATED_RESULT_BYTES + ESTIMATED_DEMAND_BYTES * ( result.getListDemandDisplay( ) != null ? result.getListDemandDisplay( ).size( ) : 0 ) );
+	}
+
+	return _demandCache;
+    }
+
+    /**
+     * Cache the notifications of each demand (getListNotification, getNotificationsByDemandList).
+     * The cache of a customer is cleared by deleteNotificationByCuid, deleteAllDemandsAndNotifications and reassignNotifications.
+     *
+     * @param bNotificationCacheEnabled
+     */
+    public void setNotificationCacheEnabled( boolean bNotificationCacheEnabled )
+    {
+	this._bNotificationCacheEnabled = bNotificationCacheEnabled;
+    }
+
+    /**
+     * set the time to live (in seconds) of the cached notifications
+     *
+     * @param lNotificationCacheTtl
+     */
+    public void setNotificationCacheTtl( long lNotificationCacheTtl )
+    {
+	this._lNotificationCacheTtl = lNotificationCacheTtl;
+    }
+
+    /**
+     * set the max number of demands whose notifications are cached
+     *
+     * @param nNotificationCacheMaxEntries
+     */
+    public void setNotificationCacheMaxEntries( int nNotificationCacheMaxEntries )
+    {
+	this._nNotificationCacheMaxEntries = nNotificationCacheMaxEntries;
+    }
+
+    /**
+     * set the max estimated size (in bytes) of the cached notifications (0 : no limit)
+     *
+     * @param lNotificationCacheMaxBytes
+     */
+    public void setNotificationCacheMaxBytes( long lNotificationCacheMaxBytes )
+    {
+	this._lNotificationCacheMaxBytes = lNotificationCacheMaxBytes;
+    }
+
+    /**
+     * get the cache of the notifications, created on first use
+     *
+     * @return the cache, or null if disabled
+     */
+    protected synchronized CustomerResultCache<List<Notification>> getNotificationCache( )
+    {
+	if ( _bNotificationCacheEnabled && _notificationCache == null )
+	{
+	    _notificationCache = new CustomerResultCache<>( _lNotificationCacheTtl, _nNotificationCacheMaxEntries, _lNotificationCacheMaxBytes,
+		    list -> ESTIMATED_RESULT_BYTES + ESTIMATED_NOTIFICATION_BYTES * list.size( ) );
+	}
+
+	return _notificationCache;
+    }
+
+    /**
+     * Load the referential data (status, generic status, categories and demand types) concurrently,
+     * bounded by maxConcurrentCalls, and wait until they are loaded or the warm-up timeout expires.
+     * Can be declared as the init-method of the service bean.
+     *
+     * @return true if the service is ready
+     */
+    public boolean warmUp( )
+    {
+	if ( !isCacheEnable( ) )
+	{
+	    return true;
+	}
+
+	restoreSnapshotOnce( );
+
+	List<CompletableFuture<Object>> listLoads = new ArrayList<>( );
+	for ( Part part : Part.values( ) )
+	{
+	    listLoads.add( getExecutor( ).submit( ( ) -> getReferential( part ) ) );
+	}
+
+	try
+	{
+	    CompletableFuture.allOf( listLoads.toArray( new CompletableFuture [ listLoads.size( )] ) ).get( _lWarmUpTimeout, TimeUnit.SECONDS );
+	}
+	catch ( InterruptedException e )
+	{
+	    Thread.currentThread( ).interrupt( );
+	}
+	catch ( ExecutionException | TimeoutException e )
+	{
+	    AppLogService.error ( "NotificationStore warm-up not complete", e );
+	}
+
+	boolean bReady = isReady( );
+	AppLogService.info ( "NotificationStore warm-up " + ( bReady ? "complete" : "incomplete" ) );
+
+	return bReady;
+    }
+
+    /**
+     * Readiness of the service, for health checks
+     *
+     * @return true if all the referential data is loaded (or the cache is disabled)
+     */
+    public boolean isReady( )
+    {
+	if ( !isCacheEnable( ) )
+	{
+	    return true;
+	}
+
+	ReferentialSnapshot snapshot = _snapshot.get( );
+	for ( Part part : Part.values( ) )
+	{
+	    if ( snapshot.getValue( part ) == null )
+	    {
+		return false;
+	    }
+	}
+
+	return true;
+    }
+
+    /**
+     * @return the number of times last-known-good referential data was served because the NotificationStore was down
+     */
+    public long getStaleServedCount( )
+    {
+	return _staleServedCount.get( );
+    }
+
+    /**
+     * @return the number of failed referential loads (the loads stopped by the deadline of the caller are not counted)
+     */
+    public long getLoadFailureCount( )
+    {
+	return _loadFailureCount.get( );
+    }
+
+    /**
+     * set the default page size of the demand streams
+     *
+     * @param nDemandPageSize
+     */
+    public void setDemandPageSize( int nDemandPageSize )
+    {
+	this._nDemandPageSize = nDemandPageSize;
+    }
+
+    /**
+     * set the max number of demands of each request sent by getNotificationsByDemandList (0 : no limit)
+     *
+     * @param nNotificationChunkSize
+     */
+    public void setNotificationChunkSize( int nNotificationChunkSize )
+    {
+	this._nNotificationChunkSize = nNotificationChunkSize;
+    }
+
+    /**
+     * set the max body size (in bytes) of each request sent by getNotificationsByDemandList (0 : no limit)
+     *
+     * @param nNotificationChunkMaxBytes
+     */
+    public void setNotificationChunkMaxBytes( int nNotificationChunkMaxBytes )
+    {
+	this._nNotificationChunkMaxBytes = nNotificationChunkMaxBytes;
+    }
+
+    /**
+     * get the executor of parallel calls, created on first use
+     *
+     * @return the executor
+     */
+    protected synchronized NotificationStoreExecutor getExecutor( )
+    {
+	if ( _executor == null )
+	{
+	    _executor = new NotificationStoreExecutor( _bVirtualThreadsEnabled, _nMaxConcurrentCalls );
+	}
+
+	return _executor;
+    }
+
+    /**
+     * Run independent calls in parallel and wait until all of them are complete.
+     * ex : service.executeAll( Arrays.asList( ( ) -> service.getListNotification( ... ), ( ) -> service.getListNotification( ... ) ) )
+     *
+     * @param listCalls
+     *            the calls
+     * @return the results, in the order of the calls
+     * @throws NotificationException
+     *             the first failure, once all the calls are complete
+     */
+    public <T> List<T> executeAll( List<? extends Callable<T>> listCalls ) throws NotificationException
+    {
+	return getExecutor( ).invokeAll( listCalls );
+    }
+
+    /**
+     * Stop the executor of parallel calls
+     */
+    public synchronized void shutdown( )
+    {
+	if ( _executor != null )
+	{
+	    _executor.shutdown( );
+	    _executor = null;
+	}
+	if ( _refreshScheduler != null )
+	{
+	    _refreshScheduler.shutdownNow( );
+	    _refreshScheduler = null;
+	}
+    }
+
     /**
      * List of demand by customer id, type demand id and index
      * 
@@ -125,11 +591,26 @@ public class NotificationStoreService extends AbstractCacheableService
      * @param strLimitResult
      * @param strNotificationType
      *            (Not required)
-     * @return list of demand
+     * @return list of demand (shared with the demand cache when it is enabled : it must not be modified)
      */
     public DemandResult getListDemand( String strCustomerId, String strIdDemandType, String strIndex, String strLimitResult, String strNotificationType, String strDirectionDateOrderBy ) throws NotificationException
     {
-	return this._transportProvider.getListDemand( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+	CustomerResultCache<DemandResult> cache = getDemandCache( );
+	if ( cache == null )
+	{
+	    return this._transportProvider.getListDemand( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+	}
+
+	String strKey = CustomerResultCache.key( "list", strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+	DemandResult result = cache.get( strKey );
+	if ( result == null )
+	{
+	    long lGeneration = cache.getGeneration( );
+	    result = this._transportProvider.getListDemand( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+	    cache.put( strCustomerId, strKey, result, lGeneration );
+	}
+
+	return result;
     }
 
     /**
@@ -145,12 +626,321 @@ public class NotificationStoreService extends AbstractCacheableService
      * @param strNotificationType
      *            (Not required)
      * @param strCategoryCode
-     * @return list of demand
+     * @return list of demand (shared with the demand cache when it is enabled : it must not be modified)
      */
     public DemandResult getListOfDemandByStatus( String strCustomerId, String strListStatus, String strIdDemandType, String strIndex, String strLimitResult,
 	    String strNotificationType, String strCategoryCode ) throws NotificationException
     {
-	return this._transportProvider.getListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult, strNotificationType, strCategoryCode );
+	CustomerResultCache<DemandResult> cache = getDemandCache( );
+	if ( cache == null )
+	{
+	    return this._transportProvider.getListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult, strNotificationType, strCategoryCode );
+	}
+
+	String strKey = CustomerResultCache.key( "status", strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult, strNotificationType, strCategoryCode );
+	DemandResult result = cache.get( strKey );
+	if ( result == null )
+	{
+	    long lGeneration = cache.getGeneration( );
+	    result = this._transportProvider.getListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, strIndex, strLimitResult, strNotificationType, strCategoryCode );
+	    cache.put( strCustomerId, strKey, result, lGeneration );
+	}
+
+	return result;
+    }
+
+    /**
+     * List of demand of several customers (households, search results...) by type demand id and index.
+     * The lookups run in parallel (bounded by maxConcurrentCalls), and each of them fails after the timeout
+     * without failing the other ones.
+     * 
+     * @param collectionCustomerIds
+     * @param strIdDemandType
+     * @param strIndex
+     *            (Not required)
+     * @param strLimitResult
+     * @param strNotificationType
+     *            (Not required)
+     * @param strDirectionDateOrderBy
+     *            (Not required)
+     * @param lTimeout
+     *            the timeout of each lookup, in milliseconds (0 : no timeout)
+     * @return the result of each customer, in the order of the customer ids
+     */
+    public Map<String, CustomerDemandResult> getListDemandByCustomers( Collection<String> collectionCustomerIds, String strIdDemandType, String strIndex,
+	    String strLimitResult, String strNotificationType, String strDirectionDateOrderBy, long lTimeout )
+    {
+	Map<String, CompletableFuture<DemandResult>> mapFutures = new LinkedHashMap<>( );
+	Map<String, AtomicLong> mapStartTimes = new HashMap<>( );
+
+	for ( String strCustomerId : collectionCustomerIds )
+	{
+	    if ( mapFutures.containsKey( strCustomerId ) )
+	    {
+		continue;
+	    }
+
+	    AtomicLong startTime = new AtomicLong( );
+	    mapStartTimes.put( strCustomerId, startTime );
+	    mapFutures.put( strCustomerId, getExecutor( ).submit( ( ) -> {
+		startTime.set( System.currentTimeMillis( ) );
+		if ( lTimeout <= 0 )
+		{
+		    return getListDemand( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy );
+		}
+		// the requests of the lookup are aborted when the timeout is exceeded
+		return CallDeadline.ofTimeout( lTimeout )
+			.call( ( ) -> getListDemand( strCustomerId, strIdDemandType, strIndex, strLimitResult, strNotificationType, strDirectionDateOrderBy ) );
+	    } ) );
+	}
+
+	Map<String, CustomerDemandResult> mapResults = new LinkedHashMap<>( );
+	for ( Map.Entry<String, CompletableFuture<DemandResult>> entry : mapFutures.entrySet( ) )
+	{
+	    String strCustomerId = entry.getKey( );
+	    try
+	    {
+		mapResults.put( strCustomerId, new CustomerDemandResult( strCustomerId, await( entry.getValue( ), mapStartTimes.get( strCustomerId ), lTimeout ), null ) );
+	    }
+	    catch ( NotificationException e )
+	    {
+		AppLogService.error ( "NotificationStore lookup of customer " + strCustomerId + " failed : " + e.getMessage( ) );
+		mapResults.put( strCustomerId, new CustomerDemandResult( strCustomerId, null, e ) );
+	    }
+	}
+
+	return mapResults;
+    }
+
+    /**
+     * wait for a call, at most the timeout after the start of the call (the waiting time in the executor queue is not counted)
+     * 
+     * @param future
+     * @param startTime
+     *            the start time of the call, 0 while it is queued
+     * @param lTimeout
+     *            in milliseconds (0 : no timeout)
+     * @return the result of the call
+     * @throws NotificationException
+     *             if the call failed or timed out
+     */
+    private static <T> T await( CompletableFuture<T> future, AtomicLong startTime, long lTimeout ) throws NotificationException
+    {
+	try
+	{
+	    if ( lTimeout <= 0 )
+	    {
+		return future.get( );
+	    }
+
+	    while ( true )
+	    {
+		long lStart = startTime.get( );
+		long lWait = ( lStart > 0 ) ? lStart + lTimeout - System.currentTimeMillis( ) : lTimeout;
+		try
+		{
+		    return future.get( Math.max( lWait, 0 ), TimeUnit.MILLISECONDS );
+		}
+		catch ( TimeoutException e )
+		{
+		    if ( lStart > 0 )
+		    {
+			future.cancel( true );
+			throw new NotificationStoreTimeoutException( "NotificationStore call timed out after " + lTimeout + " ms", lTimeout );
+		    }
+		    // still queued : wait for the call to start
+		}
+	    }
+	}
+	catch ( InterruptedException e )
+	{
+	    Thread.currentThread( ).interrupt( );
+	    throw new NotificationException( "Interrupted while waiting for a NotificationStore call" );
+	}
+	catch ( ExecutionException e )
+	{
+	    throw NotificationStoreExecutor.toNotificationException( e.getCause( ) );
+	}
+    }
+
+    /**
+     * All the demands of a customer, loaded lazily page by page with the default page size
+     * 
+     * @see #streamListDemand(String, String, String, String, int)
+     */
+    public Stream<DemandDisplay> streamListDemand( String strCustomerId, String strIdDemandType, String strNotificationType, String strDirectionDateOrderBy )
+    {
+	return streamListDemand( strCustomerId, strIdDemandType, strNotificationType, strDirectionDateOrderBy, _nDemandPageSize );
+    }
+
+    /**
+     * All the demands of a customer, loaded lazily page by page : the next page is loaded while the current one is processed.
+     * The load failures are thrown as UncheckedNotificationException. The stream should be closed if it is not fully consumed.
+     * 
+     * @param strCustomerId
+     * @param strIdDemandType
+     * @param strNotificationType
+     *            (Not required)
+     * @param strDirectionDateOrderBy
+     *            (Not required)
+     * @param nPageSize
+     * @return the stream of demands
+     */
+    public Stream<DemandDisplay> streamListDemand( String strCustomerId, String strIdDemandType, String strNotificationType, String strDirectionDateOrderBy,
+	    int nPageSize )
+    {
+	return streamPages( nIndex -> getListDemand( strCustomerId, strIdDemandType, String.valueOf( nIndex ), String.valueOf( nPageSize ), strNotificationType,
+		strDirectionDateOrderBy ), nPageSize );
+    }
+
+    /**
+     * All the demands of a customer with the given status, loaded lazily page by page with the default page size
+     * 
+     * @see #streamListOfDemandByStatus(String, String, String, String, String, int)
+     */
+    public Stream<DemandDisplay> streamListOfDemandByStatus( String strCustomerId, String strListStatus, String strIdDemandType, String strNotificationType,
+	    String strCategoryCode )
+    {
+	return streamListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, strNotificationType, strCategoryCode, _nDemandPageSize );
+    }
+
+    /**
+     * All the demands of a customer with the given status, loaded lazily page by page : the next page is loaded while the current one is processed.
+     * The load failures are thrown as UncheckedNotificationException. The stream should be closed if it is not fully consumed.
+     * 
+     * @param strCustomerId
+     * @param strListStatus
+     *            (separated by , )
+     * @param strIdDemandType
+     * @param strNotificationType
+     *            (Not required)
+     * @param strCategoryCode
+     * @param nPageSize
+     * @return the stream of demands
+     */
+    public Stream<DemandDisplay> streamListOfDemandByStatus( String strCustomerId, String strListStatus, String strIdDemandType, String strNotificationType,
+	    String strCategoryCode, int nPageSize )
+    {
+	return streamPages( nIndex -> getListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, String.valueOf( nIndex ), String.valueOf( nPageSize ),
+		strNotificationType, strCategoryCode ), nPageSize );
+    }
+
+    /**
+     * All the demands of a customer, for exports : the pages after the first one are loaded in parallel
+     * (bounded by maxConcurrentCalls), using the total count of the first page
+     * 
+     * @param strCustomerId
+     * @param strIdDemandType
+     * @param strNotificationType
+     *            (Not required)
+     * @param strDirectionDateOrderBy
+     *            (Not required)
+     * @return all the demands, in the order of the pages
+     * @throws NotificationException
+     */
+    public DemandResult getAllDemands( String strCustomerId, String strIdDemandType, String strNotificationType, String strDirectionDateOrderBy )
+	    throws NotificationException
+    {
+	int nPageSize = _nDemandPageSize;
+
+	return loadAllPages( nIndex -> getListDemand( strCustomerId, strIdDemandType, String.valueOf( nIndex ), String.valueOf( nPageSize ), strNotificationType,
+		strDirectionDateOrderBy ), nPageSize );
+    }
+
+    /**
+     * All the demands of a customer with the given status, for exports : the pages after the first one are loaded in parallel
+     * (bounded by maxConcurrentCalls), using the total count of the first page
+     * 
+     * @param strCustomerId
+     * @param strListStatus
+     *            (separated by , )
+     * @param strIdDemandType
+     * @param strNotificationType
+     *            (Not required)
+     * @param strCategoryCode
+     * @return all the demands, in the order of the pages
+     * @throws NotificationException
+     */
+    public DemandResult getAllDemandsByStatus( String strCustomerId, String strListStatus, String strIdDemandType, String strNotificationType,
+	    String strCategoryCode ) throws NotificationException
+    {
+	int nPageSize = _nDemandPageSize;
+
+	return loadAllPages( nIndex -> getListOfDemandByStatus( strCustomerId, strListStatus, strIdDemandType, String.valueOf( nIndex ), String.valueOf( nPageSize ),
+		strNotificationType, strCategoryCode ), nPageSize );
+    }
+
+    /**
+     * load all the pages of a demand list : the first page gives the number of pages, which are then loaded in parallel
+     * 
+     * @param loader
+     * @param nPageSize
+     * @return all the demands, in the order of the pages
+     * @throws NotificationException
+     */
+    private DemandResult loadAllPages( DemandPageIterator.PageLoader loader, int nPageSize ) throws NotificationException
+    {
+	DemandResult firstPage = loader.loadPage( DemandPageIterator.FIRST_PAGE_INDEX );
+	if ( firstPage == null || firstPage.getListDemandDisplay( ) == null || firstPage.getListDemandDisplay( ).size( ) < nPageSize )
+	{
+	    return firstPage;
+	}
+
+	List<DemandDisplay> listDemands = new ArrayList<>( firstPage.getListDemandDisplay( ) );
+	int nTotal = firstPage.getNumberResult( );
+
+	if ( nTotal <= 0 )
+	{
+	    // unknown total count : sequential paging
+	    try ( Stream<DemandDisplay> pages = streamPages( loader, nPageSize ) )
+	    {
+		listDemands.clear( );
+		pages.forEach( listDemands::add );
+	    }
+	    catch ( UncheckedNotificationException e )
+	    {
+		throw e.getCause( );
+	    }
+	}
+	else
+	{
+	    List<Callable<DemandResult>> listCalls = new ArrayList<>( );
+	    int nPageCount = ( nTotal + nPageSize - 1 ) / nPageSize;
+	    for ( int nIndex = DemandPageIterator.FIRST_PAGE_INDEX + 1; nIndex < DemandPageIterator.FIRST_PAGE_INDEX + nPageCount; nIndex++ )
+	    {
+		int nPageIndex = nIndex;
+		listCalls.add( ( ) -> loader.loadPage( nPageIndex ) );
+	    }
+
+	    for ( DemandResult page : executeAll( listCalls ) )
+	    {
+		if ( page != null && page.getListDemandDisplay( ) != null )
+		{
+		    listDemands.addAll( page.getListDemandDisplay( ) );
+		}
+	    }
+	}
+
+	DemandResult result = new DemandResult( );
+	result.setListDemandDisplay( listDemands );
+	result.setNumberResult( Math.max( nTotal, listDemands.size( ) ) );
+
+	return result;
+    }
+
+    /**
+     * build a lazy stream over the pages of a demand list
+     * 
+     * @param loader
+     * @param nPageSize
+     * @return the stream
+     */
+    private Stream<DemandDisplay> streamPages( DemandPageIterator.PageLoader loader, int nPageSize )
+    {
+	DemandPageIterator iterator = new DemandPageIterator( loader, nPageSize, getExecutor( ) );
+
+	return StreamSupport.stream( Spliterators.spliteratorUnknownSize( iterator, Spliterator.ORDERED | Spliterator.NONNULL ), false )
+		.onClose( iterator::close );
     }
 
     /**
@@ -160,26 +950,209 @@ public class NotificationStoreService extends AbstractCacheableService
      * @param strIdDemand
      * @param strIdDemandType
      * @param strNotificationType
-     * @return list of notification
+     * @return list of notification (the notifications are shared with the notification cache when it is enabled : they must not be modified)
      */
     public NotificationResult getListNotification( String strCustomerId, String strIdDemand, String strIdDemandType, String strNotificationType ) throws NotificationException
     {
-	return this._transportProvider.getListNotification( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+	CustomerResultCache<List<Notification>> cache = getNotificationCache( );
+	if ( cache == null )
+	{
+	    return this._transportProvider.getListNotification( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+	}
+
+	String strKey = CustomerResultCache.key( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+	List<Notification> listNotifications = cache.get( strKey );
+	if ( listNotifications != null )
+	{
+	    return toNotificationResult( listNotifications );
+	}
+
+	long lGeneration = cache.getGeneration( );
+	NotificationResult result = this._transportProvider.getListNotification( strCustomerId, strIdDemand, strIdDemandType, strNotificationType );
+	if ( result != null && result.getNotifications( ) != null )
+	{
+	    cache.put( strCustomerId, strKey, new ArrayList<>( result.getNotifications( ) ), lGeneration );
+	}
+
+	return result;
     }
 
     /**
      * List of notifications for a list of (demandId, demandTypeId) pairs and a customer id
      *
-     * @param strCustomerId
-     * @param listDemandPairs
-     *            list of maps with keys "demandId" and "demandTypeId"
-     * @param strNotificationType
-     *            (Not required)
-     * @return list of notifications
+     * @param strCustomerId
+     * @param listDemandPairs
+     *            list of maps with keys "demandId" and "demandTypeId"
+     * @param strNotificationType
+     *            (Not required)
+     * @return list of notifications (the notifications are shared with the notification cache when it is enabled : they must not be modified)
+     */
+    public NotificationResult getNotificationsByDemandList( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType ) throws NotificationException
+    {
+	CustomerResultCache<List<Notification>> cache = getNotificationCache( );
+	if ( cache == null || listDemandPairs == null )
+	{
+	    return loadNotificationsByDemandList( strCustomerId, listDemandPairs, strNotificationType );
+	}
+
+	// answer the cached pairs locally
+	Map<String, List<Notification>> mapNotificationsByPair = new LinkedHashMap<>( );
+	Map<String, List<Notification>> mapMissingNotifications = new HashMap<>( );
+	List<Map<String, String>> listMissingPairs = new ArrayList<>( );
+	for ( Map<String, String> pair : listDemandPairs )
+	{
+	    String strPair = NotificationStoreUtils.demandPairKey( pair.get( NotificationStoreConstants.PAIR_DEMAND_ID ), pair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID ) );
+	    if ( mapNotificationsByPair.containsKey( strPair ) )
+	    {
+		continue;
+	    }
+
+	    List<Notification> listNotifications = cache.get( CustomerResultCache.key( strCustomerId, pair.get( NotificationStoreConstants.PAIR_DEMAND_ID ),
+		    pair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID ), strNotificationType ) );
+	    if ( listNotifications == null )
+	    {
+		listMissingPairs.add( pair );
+		listNotifications = new ArrayList<>( );
+		mapMissingNotifications.put( strPair, listNotifications );
+	    }
+	    mapNotificationsByPair.put( strPair, listNotifications );
+	}
+
+	// request the missing pairs only
+	List<Notification> listUnmatched = new ArrayList<>( );
+	if ( !listMissingPairs.isEmpty( ) )
+	{
+	    long lGeneration = cache.getGeneration( );
+	    NotificationResult result = loadNotificationsByDemandList( strCustomerId, listMissingPairs, strNotificationType );
+
+	    if ( result != null && result.getNotifications( ) != null )
+	    {
+		for ( Notification notification : result.getNotifications( ) )
+		{
+		    List<Notification> listNotifications = null;
+		    if ( notification.getDemand( ) != null )
+		    {
+			listNotifications = mapMissingNotifications.get( NotificationStoreUtils.demandPairKey( notification.getDemand( ).getId( ), notification.getDemand( ).getTypeId( ) ) );
+		    }
+
+		    if ( listNotifications != null )
+		    {
+			listNotifications.add( notification );
+		    }
+		    else
+		    {
+			listUnmatched.add( notification );
+		    }
+		}
+	    }
+
+	    // a notification which can't be attributed to a requested demand may belong to any of them :
+	    // the attributed lists may be incomplete, so nothing is cached
+	    if ( listUnmatched.isEmpty( ) )
+	    {
+		for ( Map<String, String> pair : listMissingPairs )
+		{
+		    cache.put( strCustomerId, CustomerResultCache.key( strCustomerId, pair.get( NotificationStoreConstants.PAIR_DEMAND_ID ),
+			    pair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID ), strNotificationType ),
+			    mapMissingNotifications.get( NotificationStoreUtils.demandPairKey( pair.get( NotificationStoreConstants.PAIR_DEMAND_ID ), pair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID ) ) ),
+			    lGeneration );
+		}
+	    }
+	}
+
+	// merge in request order
+	NotificationResult merged = new NotificationResult( );
+	for ( List<Notification> listNotifications : mapNotificationsByPair.values( ) )
+	{
+	    merged.getNotifications( ).addAll( listNotifications );
+	}
+	merged.getNotifications( ).addAll( listUnmatched );
+
+	return merged;
+    }
+
+    /**
+     * load the notifications of a demand list : the repeated demands are removed, and the list is split into chunks
+     * (by number of demands and body size) which are requested in parallel
+     *
+     * @param strCustomerId
+     * @param listDemandPairs
+     * @param strNotificationType
+     * @return the notifications, in the order of the chunks
+     * @throws NotificationException
+     */
+    private NotificationResult loadNotificationsByDemandList( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType )
+	    throws NotificationException
+    {
+	if ( listDemandPairs == null )
+	{
+	    return this._transportProvider.getNotificationsByDemandList( strCustomerId, listDemandPairs, strNotificationType );
+	}
+
+	List<List<Map<String, String>>> listChunks = new ArrayList<>( );
+	List<Map<String, String>> listChunk = new ArrayList<>( );
+	int nChunkBytes = 0;
+	Set<String> setPairs = new HashSet<>( );
+
+	for ( Map<String, String> pair : listDemandPairs )
+	{
+	    String strDemandId = pair.get( NotificationStoreConstants.PAIR_DEMAND_ID );
+	    String strDemandTypeId = pair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID );
+	    if ( !setPairs.add( NotificationStoreUtils.demandPairKey( strDemandId, strDemandTypeId ) ) )
+	    {
+		continue;
+	    }
+
+	    int nPairBytes = PAIR_JSON_OVERHEAD + ( strDemandId != null ? strDemandId.length( ) : 4 ) + ( strDemandTypeId != null ? strDemandTypeId.length( ) : 4 );
+	    boolean bChunkFull = ( _nNotificationChunkSize > 0 && listChunk.size( ) >= _nNotificationChunkSize )
+		    || ( _nNotificationChunkMaxBytes > 0 && nChunkBytes + nPairBytes > _nNotificationChunkMaxBytes );
+	    if ( bChunkFull && !listChunk.isEmpty( ) )
+	    {
+		listChunks.add( listChunk );
+		listChunk = new ArrayList<>( );
+		nChunkBytes = 0;
+	    }
+
+	    listChunk.add( pair );
+	    nChunkBytes += nPairBytes;
+	}
+	listChunks.add( listChunk );
+
+	if ( listChunks.size( ) == 1 )
+	{
+	    return this._transportProvider.getNotificationsByDemandList( strCustomerId, listChunk, strNotificationType );
+	}
+
+	List<Callable<NotificationResult>> listCalls = new ArrayList<>( );
+	for ( List<Map<String, String>> chunk : listChunks )
+	{
+	    listCalls.add( ( ) -> this._transportProvider.getNotificationsByDemandList( strCustomerId, chunk, strNotificationType ) );
+	}
+
+	NotificationResult merged = new NotificationResult( );
+	for ( NotificationResult result : executeAll( listCalls ) )
+	{
+	    if ( result != null && result.getNotifications( ) != null )
+	    {
+		merged.getNotifications( ).addAll( result.getNotifications( ) );
+	    }
+	}
+
+	return merged;
+    }
+
+    /**
+     * build a notification result from cached notifications
+     *
+     * @param listNotifications
+     * @return the notification result
      */
-    public NotificationResult getNotificationsByDemandList( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType ) throws NotificationException
+    private static NotificationResult toNotificationResult( List<Notification> listNotifications )
     {
-	return this._transportProvider.getNotificationsByDemandList( strCustomerId, listDemandPairs, strNotificationType );
+	NotificationResult result = new NotificationResult( );
+	result.getNotifications( ).addAll( listNotifications );
+
+	return result;
     }
 
     /**
@@ -192,7 +1165,32 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public String deleteNotificationByCuid( String strCustomerId ) throws NotificationException
     {
-	return this._transportProvider.deleteNotificationByCuid( strCustomerId );
+	try
+	{
+	    return this._transportProvider.deleteNotificationByCuid( strCustomerId );
+	}
+	finally
+	{
+	    invalidateDemands( strCustomerId );
+	}
+    }
+
+    /**
+     * Delete all the demands and notifications of a customer
+     *
+     * @param strCustomerId
+     * @throws NotificationException
+     */
+    public void deleteAllDemandsAndNotifications( String strCustomerId ) throws NotificationException
+    {
+	try
+	{
+	    this._transportProvider.deleteAllDemandsAndNotifications( strCustomerId );
+	}
+	finally
+	{
+	    invalidateDemands( strCustomerId );
+	}
     }
 
     /**
@@ -203,10 +1201,21 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public DemandCategory getCategory( int nCategoryId ) throws NotificationException
     {
-	List<DemandCategory> list = getCategoriesList ( );
+	IndexedReferential<DemandCategory> categories = checkCategoryCache( );
+
+	return ( categories != null ? categories.get( nCategoryId ) : null );
+    }
+
+    /**
+     * Get category by code
+     * @param strCode
+     * @return the category
+     */
+    public DemandCategory getCategoryByCode( String strCode )
+    {
+	IndexedReferential<DemandCategory> categories = checkCategoryCache( );
 
-	return list.stream( ).filter(e -> nCategoryId == e.getId( ) )
-		.findFirst( ).orElse( null );
+	return ( categories != null ? categories.getByCode( strCode ) : null );
     }
 
     /**
@@ -219,7 +1228,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	DemandCategory dc = this._transportProvider.createCategory( category );
 
-	flushCategoryCache = true;
+	invalidate( Part.CATEGORIES );
 
 	return dc;
     }
@@ -234,7 +1243,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	DemandCategory dc = this._transportProvider.modifyCategory( category );
 
-	flushCategoryCache = true;
+	invalidate( Part.CATEGORIES );
 
 	return dc;
     }
@@ -248,7 +1257,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	this._transportProvider.deleteCategory( nCategoryId );
 
-	flushCategoryCache = true;
+	invalidate( Part.CATEGORIES );
     }
 
 
@@ -260,7 +1269,9 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public DemandType getDemandType( int nDemandTypeId ) throws NotificationException
     {
-	return getDemandType( String.valueOf ( nDemandTypeId ) );
+	IndexedReferential<DemandType> demandTypes = checkDemandTypeCache( );
+
+	return ( demandTypes != null ? demandTypes.get( nDemandTypeId ) : null );
     }
 
     /**
@@ -273,7 +1284,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	DemandType dt =  this._transportProvider.createDemandType( demandType );
 
-	flushDemandTypeCache = true;
+	invalidate( Part.DEMAND_TYPES );
 
 	return dt;
     }
@@ -288,7 +1299,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	DemandType dt =  this._transportProvider.modifyDemandType( demandType );
 
-	flushDemandTypeCache = true;
+	invalidate( Part.DEMAND_TYPES );
 
 	return dt;
     }
@@ -302,7 +1313,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	this._transportProvider.deleteDemandType( nDemandTypeId );
 
-	flushDemandTypeCache = true;
+	invalidate( Part.DEMAND_TYPES );
     }
 
 
@@ -314,10 +1325,9 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public TemporaryStatus getStatus( int nStatusId ) throws NotificationException
     {
-	List<TemporaryStatus> list = getStatusList ( );
+	IndexedReferential<TemporaryStatus> status = checkStatusCache( );
 
-	return list.stream( ).filter(e -> nStatusId == e.getId( ) )
-		.findFirst( ).orElse( null );
+	return ( status != null ? status.get( nStatusId ) : null );
     }
 
     /**
@@ -330,7 +1340,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	TemporaryStatus ts =  this._transportProvider.createStatus( status );
 
-	flushStatusCache = true;
+	invalidate( Part.STATUS );
 
 	return ts;
     }
@@ -345,7 +1355,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	TemporaryStatus ts =  this._transportProvider.modifyStatus( status );
 
-	flushStatusCache = true;
+	invalidate( Part.STATUS );
 
 	return ts;
     }
@@ -359,7 +1369,7 @@ public class NotificationStoreService extends AbstractCacheableService
     {
 	this._transportProvider.deleteStatus( nStatusId );
 
-	flushStatusCache = true;
+	invalidate( Part.STATUS );
     }
 
     /**
@@ -371,7 +1381,15 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public void reassignNotifications( String oldCustomerId, String newCustomerId ) throws NotificationException
     {
-	this._transportProvider.reassignNotifications( oldCustomerId, newCustomerId);
+	try
+	{
+	    this._transportProvider.reassignNotifications( oldCustomerId, newCustomerId);
+	}
+	finally
+	{
+	    invalidateDemands( oldCustomerId );
+	    invalidateDemands( newCustomerId );
+	}
     }
 
     /**
@@ -393,39 +1411,32 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public DemandType getDemandType( String strTypeId )
     {
-	if (strTypeId == null ) return null;
+	IndexedReferential<DemandType> demandTypes = checkDemandTypeCache( );
 
-	List<DemandType> list = getDemandTypes( );
-
-	return list.stream( ).filter(e -> strTypeId.equals (  String.valueOf ( e.getIdDemandType( ) ) ) )
-		.findFirst( ).orElse( null );
+	return ( demandTypes != null ? demandTypes.getByCode( strTypeId ) : null );
     }
 
     /**
      * Gets list of categories
-     * @return list of categories
+     * @return list of categories (a copy, which can be modified)
      */
     public List<DemandCategory> getCategoriesList( ) 
     {
-	checkCategoryCache( );
-
-	List<DemandCategory>  list =  (List<DemandCategory>) getFromCache( CATEGORY_LIST_KEY );
+	IndexedReferential<DemandCategory> categories = checkCategoryCache( );
 
-	return (list != null ? list : new  ArrayList<>() ) ;
+	return ( categories != null ? new ArrayList<>( categories.getList( ) ) : new ArrayList<>( ) );
     }
 
     /**
      * Gets list of status
-     * @return list of status
+     * @return list of status (a copy, which can be modified)
      * @throws NotificationException 
      */
     public List<TemporaryStatus> getStatusList( ) throws NotificationException
     {
-	checkStatusCache ( );
+	IndexedReferential<TemporaryStatus> status = checkStatusCache( );
 
-	List<TemporaryStatus> list = (List<TemporaryStatus>) getFromCache( STATUS_LIST_KEY );
-
-	return (list != null ? list : new  ArrayList<>() ) ;
+	return ( status != null ? new ArrayList<>( status.getList( ) ) : new ArrayList<>( ) );
     }
 
     /**
@@ -435,43 +1446,95 @@ public class NotificationStoreService extends AbstractCacheableService
      */
     public ReferenceList getGenericStatusList( ) throws NotificationException
     {
-	checkGenericStatusCache ( );
-
-	ReferenceList list = (ReferenceList) getFromCache( GENERICSTATUS_LIST_KEY );
+	ReferenceList list = checkGenericStatusCache( );
 
 	return (list != null ? list : new  ReferenceList() ) ;
     }
 
     /**
      * Gets list of demand types
-     * @return list of demand types
+     * @return list of demand types (a copy, which can be modified)
      */
     public List<DemandType> getDemandTypes( ) 
     {
-	List<DemandType>  list = checkDemandTypeCache( );
+	IndexedReferential<DemandType> demandTypes = checkDemandTypeCache( );
 
-	return (list != null ? list : new  ArrayList<>() ) ;
+	return ( demandTypes != null ? new ArrayList<>( demandTypes.getList( ) ) : new ArrayList<>( ) );
     }
 
     /**
-     * check cache
-     * re-init if necessary
+     * @return the version of the referential snapshot, incremented at each load or invalidation
+     */
+    public long getReferentialVersion( )
+    {
+	return _snapshot.get( ).getVersion( );
+    }
+
+    /**
+     * {@inheritDoc}
      * 
+     * The referential snapshot is invalidated too.
      */
-    private void checkStatusCache( )
+    @Override
+    public void resetCache( )
     {
-	if ( isCacheEnable() && !flushStatusCache && getFromCache( STATUS_LIST_KEY ) != null ) return ;
+	super.resetCache( );
 
-	try
-	{	    
-	    List<TemporaryStatus> lists = this._transportProvider.getStatusList( );
-	    putInCache( STATUS_LIST_KEY , lists );
+	CustomerResultCache<DemandResult> demandCache = getDemandCache( );
+	if ( demandCache != null )
+	{
+	    demandCache.clear( );
+	}
+
+	CustomerResultCache<List<Notification>> notificationCache = getNotificationCache( );
+	if ( notificationCache != null )
+	{
+	    notificationCache.clear( );
+	}
+
+	for ( Part part : Part.values( ) )
+	{
+	    invalidate( part );
+	}
+    }
+
+    /**
+     * remove the cached demand lists and notifications of a customer
+     * 
+     * @param strCustomerId
+     */
+    protected void invalidateDemands( String strCustomerId )
+    {
+	if ( strCustomerId == null )
+	{
+	    return;
+	}
+
+	CustomerResultCache<DemandResult> demandCache = getDemandCache( );
+	if ( demandCache != null )
+	{
+	    demandCache.invalidate( strCustomerId );
+	}
+
+	CustomerResultCache<List<Notification>> notificationCache = getNotificationCache( );
+	if ( notificationCache != null )
+	{
+	    notificationCache.invalidate( strCustomerId );
+	}
+    }
+
+    /**
+     * mark a referential part as stale : it is reloaded on next access
+     * 
+     * @param part
+     */
+    protected void invalidate( Part part )
+    {
+	ReferentialSnapshot snapshot = _snapshot.updateAndGet( s -> s.invalidate( part ) );
 
-	    flushStatusCache = false;
-	} 
-	catch ( NotificationException e )
+	if ( _bBackgroundRefreshEnabled && snapshot.getEntry( part ) != null )
 	{
-	    AppLogService.error ( "NotificationStore access problem", e );
+	    refreshInBackground( part );
 	}
     }
 
@@ -479,77 +1542,427 @@ public class NotificationStoreService extends AbstractCacheableService
      * check cache
      * re-init if necessary
      * 
+     * @return the indexed status, or null if they can't be loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    private IndexedReferential<TemporaryStatus> checkStatusCache( )
+    {
+	return (IndexedReferential<TemporaryStatus>) getReferential( Part.STATUS );
+    }
+
+    /**
+     * check cache
+     * re-init if necessary
+     * 
+     * @return the indexed demand types (the code is the demand type id as String), or null if they can't be loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    private IndexedReferential<DemandType> checkDemandTypeCache( )
+    {
+	return (IndexedReferential<DemandType>) getReferential( Part.DEMAND_TYPES );
+    }
+
+    /**
+     * check cache
+     * re-init if necessary
+     * 
+     * @return the indexed categories, or null if they can't be loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    private IndexedReferential<DemandCategory> checkCategoryCache( )
+    {
+	return (IndexedReferential<DemandCategory>) getReferential( Part.CATEGORIES );
+    }
+
+    /**
+     * check cache
+     * re-init if necessary
+     * 
+     * @return the generic status, or null if they can't be loaded
+     */
+    private ReferenceList checkGenericStatusCache( )
+    {
+	return (ReferenceList) getReferential( Part.GENERIC_STATUS );
+    }
+
+    /**
+     * get a referential part from the snapshot, reload it if necessary.
+     * The reload is single-flight : concurrent callers wait for the load in progress instead of calling the transport.
+     * 
+     * @param part
+     * @return the value, or null if it can't be loaded
      */
-    private List<DemandType> checkDemandTypeCache( )
+    private Object getReferential( Part part )
     {
-	if ( isCacheEnable() && !flushDemandTypeCache )
+	if ( !isCacheEnable( ) )
 	{
-	    List<DemandType> listd = (List<DemandType>) getFromCache( DEMANDTYPE_LIST_KEY );
-	    if ( listd != null )
+	    try
+	    {
+		return loadReferential( part );
+	    }
+	    catch ( NotificationException e )
 	    {
-		return listd;
+		AppLogService.error ( "NotificationStore access problem", e );
+		return null;
 	    }
 	}
 
-	try
+	restoreSnapshotOnce( );
+
+	ReferentialSnapshot.Entry<?> entry = _snapshot.get( ).getEntry( part );
+	if ( isFresh( part, entry ) )
+	{
+	    return entry.getValue( );
+	}
+
+	// negative cache : no reload during the backoff window after a failure
+	if ( isInFailureBackoff( part ) )
 	{
-	    List<DemandType> listd = this._transportProvider.getDemandTypes( );
-	    if ( isCacheEnable( ) ) 
+	    return getLastKnownGood( entry );
+	}
+
+	if ( _bBackgroundRefreshEnabled )
+	{
+	    startRefreshScheduler( );
+
+	    if ( entry != null )
 	    {
-		putInCache( DEMANDTYPE_LIST_KEY, listd );
-		flushDemandTypeCache = false;
+		// stale-while-revalidate
+		refreshInBackground( part );
+		return ( _lastFailures [part.ordinal( )].get( ) > entry.getLoadedAt( ) ) ? getLastKnownGood( entry ) : entry.getValue( );
 	    }
-	    
-	    return listd;
-	} 
-	catch ( NotificationException e )
+	}
+
+	synchronized( _loadLocks [part.ordinal( )] )
 	{
-	    AppLogService.error ( "NotificationStore access problem", e );
+	    // loaded by another thread while waiting
+	    entry = _snapshot.get( ).getEntry( part );
+	    if ( isFresh( part, entry ) )
+	    {
+		return entry.getValue( );
+	    }
+
+	    // failed in another thread while waiting
+	    if ( isInFailureBackoff( part ) )
+	    {
+		return getLastKnownGood( entry );
+	    }
+
+	    try
+	    {
+		return reloadReferential( part, entry );
+	    }
+	    catch ( NotificationException e )
+	    {
+		AppLogService.error ( "NotificationStore access problem", e );
+	    }
+
+	    return getLastKnownGood( entry );
 	}
-	
-	return null;
     }
 
     /**
-     * check cache
-     * re-init if necessary
+     * reload a referential part and put it in the snapshot (the caller holds the lock of the part)
      * 
+     * @param part
+     * @param entryBeforeLoad
+     *            the entry of the part before the load
+     * @return the loaded value
+     * @throws NotificationException
+     */
+    private Object reloadReferential( Part part, ReferentialSnapshot.Entry<?> entryBeforeLoad ) throws NotificationException
+    {
+	Object value;
+	try
+	{
+	    value = loadReferential( part );
+	}
+	catch ( NotificationException | RuntimeException e )
+	{
+	    // a load stopped by the deadline of the caller says nothing about the NotificationStore
+	    if ( !isDeadlineExceeded( e ) )
+	    {
+		_lastFailures [part.ordinal( )].set( System.currentTimeMillis( ) );
+		_loadFailureCount.incrementAndGet( );
+	    }
+	    throw e;
+	}
+	long lNow = System.currentTimeMillis( );
+	_lastFailures [part.ordinal( )].set( 0 );
+
+	// an invalidation during the load keeps the part stale
+	_snapshot.updateAndGet( snapshot -> snapshot.with( part, value, lNow, snapshot.getEntry( part ) != entryBeforeLoad ) );
+
+	if ( _snapshotFile != null )
+	{
+	    startRefreshScheduler( ).execute( this::persistSnapshot );
+	}
+
+	return value;
+    }
+
+    /**
+     * restore the referential snapshot from the local file, at the warm-up or at the first access
      */
-    private void checkCategoryCache( )
+    private void restoreSnapshotOnce( )
     {
-	if ( isCacheEnable() && !flushCategoryCache && getFromCache( CATEGORY_LIST_KEY ) != null ) return ;
+	if ( _snapshotFile == null || _bSnapshotRestored )
+	{
+	    return;
+	}
+
+	synchronized( _snapshotFile )
+	{
+	    if ( !_bSnapshotRestored )
+	    {
+		restoreSnapshot( );
+		_bSnapshotRestored = true;
+	    }
+	}
+    }
 
+    /**
+     * read the referential snapshot from the local file, and revalidate it in background
+     */
+    private void restoreSnapshot( )
+    {
 	try
 	{
-	    List<DemandCategory> listc = this._transportProvider.getCategoriesList( );
-	    putInCache( CATEGORY_LIST_KEY, listc );
+	    Map<Part, ReferentialSnapshot.Entry<Object>> mapEntries = _snapshotFile.load( );
+
+	    for ( Map.Entry<Part, ReferentialSnapshot.Entry<Object>> stored : mapEntries.entrySet( ) )
+	    {
+		Part part = stored.getKey( );
+		Object value = indexReferential( part, stored.getValue( ).getValue( ) );
+		long lLoadedAt = stored.getValue( ).getLoadedAt( );
+
+		// never replace data loaded from the NotificationStore
+		_snapshot.updateAndGet( snapshot -> snapshot.getEntry( part ) == null ? snapshot.withRestored( part, value, lLoadedAt ) : snapshot );
+	    }
 
-	    flushCategoryCache = false;
-	} 
-	catch ( NotificationException e )
+	    for ( Part part : mapEntries.keySet( ) )
+	    {
+		refreshInBackground( part );
+	    }
+	}
+	catch ( IOException e )
 	{
-	    AppLogService.error ( "NotificationStore access problem", e );
+	    AppLogService.error ( "NotificationStore referential snapshot file can't be read", e );
 	}
     }
 
     /**
-     * check cache
-     * re-init if necessary
+     * write the referential snapshot to the local file
+     */
+    private void persistSnapshot( )
+    {
+	try
+	{
+	    _snapshotFile.save( _snapshot.get( ) );
+	}
+	catch ( IOException e )
+	{
+	    AppLogService.error ( "NotificationStore referential snapshot file can't be written", e );
+	}
+    }
+
+    /**
+     * @param part
+     * @param entry
+     * @return true if the entry is loaded, not invalidated and younger than the max age,
+     *         or restored from the local file and still being revalidated in background
+     */
+    private boolean isFresh( Part part, ReferentialSnapshot.Entry<?> entry )
+    {
+	if ( entry == null || entry.isStale( ) )
+	{
+	    return false;
+	}
+	if ( entry.isRestored( ) && _refreshPending [part.ordinal( )].get( ) )
+	{
+	    return true;
+	}
+
+	return _lReferentialMaxAge <= 0 || System.currentTimeMillis( ) - entry.getLoadedAt( ) < _lReferentialMaxAge * 1000;
+    }
+
+    /**
+     * @param exception
+     *            the failure of a call
+     * @return true if the call failed because the deadline of the current call is exceeded
+     */
+    private static boolean isDeadlineExceeded( Throwable exception )
+    {
+	CallDeadline deadline = CallDeadline.current( );
+	if ( deadline != null && deadline.isExpired( ) )
+	{
+	    return true;
+	}
+
+	Throwable cause = exception;
+	while ( cause != null )
+	{
+	    if ( cause instanceof NotificationStoreTimeoutException )
+	    {
+		return true;
+	    }
+	    cause = cause.getCause( );
+	}
+
+	return false;
+    }
+
+    /**
+     * @param part
+     * @return true if the last load of the part failed less than the backoff delay ago
+     */
+    private boolean isInFailureBackoff( Part part )
+    {
+	long lLastFailure = _lastFailures [part.ordinal( )].get( );
+
+	return lLastFailure > 0 && System.currentTimeMillis( ) - lLastFailure < _lFailureBackoff * 1000;
+    }
+
+    /**
+     * get the last successfully loaded value, served while the NotificationStore is down
+     * 
+     * @param entry
+     * @return the value, or null if there is none or if it is older than the max staleness
+     */
+    private Object getLastKnownGood( ReferentialSnapshot.Entry<?> entry )
+    {
+	if ( entry == null || entry.getValue( ) == null )
+	{
+	    return null;
+	}
+	if ( _lMaxStaleness > 0 && System.currentTimeMillis( ) - entry.getLoadedAt( ) > _lMaxStaleness * 1000 )
+	{
+	    return null;
+	}
+
+	_staleServedCount.incrementAndGet( );
+
+	return entry.getValue( );
+    }
+
+    /**
+     * reload a referential part in background, unless a refresh of this part is already pending
      * 
+     * @param part
      */
-    private void checkGenericStatusCache( )
+    private void refreshInBackground( Part part )
     {
-	if ( getFromCache( GENERICSTATUS_LIST_KEY ) != null ) return ;
+	AtomicBoolean pending = _refreshPending [part.ordinal( )];
+	if ( !pending.compareAndSet( false, true ) )
+	{
+	    return;
+	}
 
 	try
-	{	    
-	    ReferenceList gsl = this._transportProvider.getGenericStatusList( );
-	    putInCache( GENERICSTATUS_LIST_KEY, gsl );
+	{
+	    startRefreshScheduler( ).execute( ( ) -> {
+		try
+		{
+		    synchronized( _loadLocks [part.ordinal( )] )
+		    {
+			reloadReferential( part, _snapshot.get( ).getEntry( part ) );
+		    }
+		}
+		catch ( Exception e )
+		{
+		    AppLogService.error ( "NotificationStore access problem", e );
+		}
+		finally
+		{
+		    pending.set( false );
+		}
+	    } );
+	}
+	catch ( RuntimeException e )
+	{
+	    pending.set( false );
+	    AppLogService.error ( "NotificationStore background refresh problem", e );
+	}
+    }
+
+    /**
+     * start the scheduler of the background refresh, if not started
+     * 
+     * @return the scheduler
+     */
+    private synchronized ScheduledExecutorService startRefreshScheduler( )
+    {
+	if ( _refreshScheduler == null )
+	{
+	    _refreshScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+		Thread thread = new Thread( runnable, "notificationstore-referential-refresh" );
+		thread.setDaemon( true );
+		return thread;
+	    } );
+
+	    if ( _bBackgroundRefreshEnabled && _lRefreshInterval > 0 )
+	    {
+		// revalidate all the loaded parts, generic status included
+		_refreshScheduler.scheduleWithFixedDelay( ( ) -> {
+		    for ( Part part : Part.values( ) )
+		    {
+			if ( _snapshot.get( ).getEntry( part ) != null )
+			{
+			    refreshInBackground( part );
+			}
+		    }
+		}, _lRefreshInterval, _lRefreshInterval, TimeUnit.SECONDS );
+	    }
+	}
+
+	return _refreshScheduler;
+    }
+
+    /**
+     * load a referential part from the transport
+     * 
+     * @param part
+     * @return the loaded value
+     * @throws NotificationException
+     */
+    private Object loadReferential( Part part ) throws NotificationException
+    {
+	switch ( part )
+	{
+	    case STATUS:
+		return indexReferential( part, this._transportProvider.getStatusList( ) );
+	    case CATEGORIES:
+		return indexReferential( part, this._transportProvider.getCategoriesList( ) );
+	    case DEMAND_TYPES:
+		return indexReferential( part, this._transportProvider.getDemandTypes( ) );
+	    case GENERIC_STATUS:
+		return this._transportProvider.getGenericStatusList( );
+	    default:
+		throw new IllegalArgumentException( part.name( ) );
+	}
+    }
 
-	} 
-	catch ( NotificationException e )
+    /**
+     * build the snapshot value of a referential part from its list
+     * 
+     * @param part
+     * @param list
+     *            the list returned by the transport
+     * @return the indexed list (the generic status list is not indexed)
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Object indexReferential( Part part, Object list )
+    {
+	switch ( part )
 	{
-	    AppLogService.error ( "NotificationStore access problem", e );
+	    case STATUS:
+		return new IndexedReferential<>( (List<TemporaryStatus>) list, TemporaryStatus::getId, null );
+	    case CATEGORIES:
+		return new IndexedReferential<>( (List<DemandCategory>) list, DemandCategory::getId, DemandCategory::getCode );
+	    case DEMAND_TYPES:
+		return new IndexedReferential<>( (List<DemandType>) list, DemandType::getIdDemandType, e -> String.valueOf( e.getIdDemandType( ) ) );
+	    default:
+		return list;
 	}
     }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandCategory;
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.grubusiness.business.demand.TemporaryStatus;
+import fr.paris.lutece.util.ReferenceList;
+
+/**
+ * Immutable, versioned snapshot of the NotificationStore referential data (status, generic status, categories and demand types).
+ * Each change produces a new snapshot with the next version.
+ */
+public final class ReferentialSnapshot
+{
+    /**
+     * The referential parts of the snapshot
+     */
+    public enum Part
+    {
+        STATUS,
+        GENERIC_STATUS,
+        CATEGORIES,
+        DEMAND_TYPES
+    }
+
+    public static final ReferentialSnapshot EMPTY = new ReferentialSnapshot( 0, new Entry<?> [ Part.values( ).length] );
+
+    private final long _lVersion;
+    private final Entry<?> [ ] _entries;
+
+    /**
+     * Constructor
+     * 
+     * @param lVersion
+     * @param entries
+     */
+    private ReferentialSnapshot( long lVersion, Entry<?> [ ] entries )
+    {
+        _lVersion = lVersion;
+        _entries = entries;
+    }
+
+    /**
+     * @return the version of the snapshot
+     */
+    public long getVersion( )
+    {
+        return _lVersion;
+    }
+
+    /**
+     * @param part
+     * @return the entry of the part, or null if the part has never been loaded
+     */
+    public Entry<?> getEntry( Part part )
+    {
+        return _entries [part.ordinal( )];
+    }
+
+    /**
+     * @return the indexed status, or null if not loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    public IndexedReferential<TemporaryStatus> getStatus( )
+    {
+        return (IndexedReferential<TemporaryStatus>) getValue( Part.STATUS );
+    }
+
+    /**
+     * @return the generic status, or null if not loaded
+     */
+    public ReferenceList getGenericStatus( )
+    {
+        return (ReferenceList) getValue( Part.GENERIC_STATUS );
+    }
+
+    /**
+     * @return the indexed categories, or null if not loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    public IndexedReferential<DemandCategory> getCategories( )
+    {
+        return (IndexedReferential<DemandCategory>) getValue( Part.CATEGORIES );
+    }
+
+    /**
+     * @return the indexed demand types, or null if not loaded
+     */
+    @SuppressWarnings( "unchecked" )
+    public IndexedReferential<DemandType> getDemandTypes( )
+    {
+        return (IndexedReferential<DemandType>) getValue( Part.DEMAND_TYPES );
+    }
+
+    /**
+     * @param part
+     * @return the value of the part, or null if not loaded
+     */
+    public Object getValue( Part part )
+    {
+        Entry<?> entry = getEntry( part );
+
+        return ( entry != null ) ? entry.getValue( ) : null;
+    }
+
+    /**
+     * @param part
+     * @param value
+     *            the loaded value
+     * @param lLoadedAt
+     *            the loading time
+     * @param bStale
+     *            true if the value is already outdated (invalidated during the load)
+     * @return a new snapshot with the part replaced
+     */
+    public ReferentialSnapshot with( Part part, Object value, long lLoadedAt, boolean bStale )
+    {
+        return replace( part, new Entry<>( value, lLoadedAt, bStale ) );
+    }
+
+    /**
+     * @param part
+     * @param value
+     *            the value restored from the local file
+     * @param lLoadedAt
+     *            the loading time of the value
+     * @return a new snapshot with the part replaced by a restored entry
+     */
+    public ReferentialSnapshot withRestored( Part part, Object value, long lLoadedAt )
+    {
+        return replace( part, new Entry<>( value, lLoadedAt, false, true ) );
+    }
+
+    /**
+     * @param part
+     * @return a new snapshot with the part marked stale, the value is kept
+     */
+    public ReferentialSnapshot invalidate( Part part )
+    {
+        Entry<?> entry = getEntry( part );
+
+        if ( entry == null )
+        {
+            return this;
+        }
+
+        return replace( part, new Entry<>( entry.getValue( ), entry.getLoadedAt( ), true ) );
+    }
+
+    /**
+     * @param part
+     * @param entry
+     * @return a new snapshot with the entry replaced
+     */
+    private ReferentialSnapshot replace( Part part, Entry<?> entry )
+    {
+        Entry<?> [ ] entries = _entries.clone( );
+        entries [part.ordinal( )] = entry;
+
+        return new ReferentialSnapshot( _lVersion + 1, entries );
+    }
+
+    /**
+     * Immutable entry of a part
+     *
+     * @param <V>
+     *            the type of the value
+     */
+    public static final class Entry<V>
+    {
+        private final V _value;
+        private final long _lLoadedAt;
+        private final boolean _bStale;
+        private final boolean _bRestored;
+
+        /**
+         * Constructor
+         * 
+         * @param value
+         * @param lLoadedAt
+         * @param bStale
+         */
+        Entry( V value, long lLoadedAt, boolean bStale )
+        {
+            this( value, lLoadedAt, bStale, false );
+        }
+
+        /**
+         * Constructor
+         * 
+         * @param value
+         * @param lLoadedAt
+         * @param bStale
+         * @param bRestored
+         */
+        Entry( V value, long lLoadedAt, boolean bStale, boolean bRestored )
+        {
+            _value = value;
+            _lLoadedAt = lLoadedAt;
+            _bStale = bStale;
+            _bRestored = bRestored;
+        }
+
+        /**
+         * @return the value
+         */
+        public V getValue( )
+        {
+            return _value;
+        }
+
+        /**
+         * @return the loading time (ms)
+         */
+        public long getLoadedAt( )
+        {
+            return _lLoadedAt;
+        }
+
+        /**
+         * @return true if the value must be reloaded
+         */
+        public boolean isStale( )
+        {
+            return _bStale;
+        }
+
+        /**
+         * @return true if the value was restored from the local file and not reloaded since
+         */
+        public boolean isRestored( )
+        {
+            return _bRestored;
+        }
+    }
+}
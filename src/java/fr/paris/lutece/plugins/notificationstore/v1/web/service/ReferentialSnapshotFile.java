@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.ReferentialSnapshot.Part;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreUtils;
+
+/**
+ * Local file copy of the referential snapshot, used for a fast cold start.
+ * <p>
+ * Format : magic, format version, number of parts, then for each part : ordinal (byte), loading time (long), length (int) and the json of the list.
+ * The file is memory-mapped on read and each part is parsed directly from the mapped buffer.
+ * </p>
+ */
+public class ReferentialSnapshotFile
+{
+    private static final int MAGIC = 0x4E535246;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path _path;
+
+    /**
+     * Constructor
+     * 
+     * @param strPath
+     *            the path of the file
+     */
+    public ReferentialSnapshotFile( String strPath )
+    {
+        _path = Paths.get( strPath );
+    }
+
+    /**
+     * Write the loaded parts of the snapshot (the file is replaced atomically)
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @throws IOException
+     */
+    public void save( ReferentialSnapshot snapshot ) throws IOException
+    {
+        Map<Part, byte [ ]> mapParts = new EnumMap<>( Part.class );
+        Map<Part, Long> mapLoadedAt = new EnumMap<>( Part.class );
+
+        for ( Part part : Part.values( ) )
+        {
+            ReferentialSnapshot.Entry<?> entry = snapshot.getEntry( part );
+            Object value = ( entry != null ) ? entry.getValue( ) : null;
+
+            if ( value != null )
+            {
+                Object list = ( value instanceof IndexedReferential ) ? ( (IndexedReferential<?>) value ).getList( ) : value;
+                mapParts.put( part, NotificationStoreUtils.getWriter( list.getClass( ) ).writeValueAsBytes( list ) );
+                mapLoadedAt.put( part, entry.getLoadedAt( ) );
+            }
+        }
+
+        Path parent = _path.toAbsolutePath( ).getParent( );
+        if ( parent != null )
+        {
+            Files.createDirectories( parent );
+        }
+        Path tmpPath = _path.resolveSibling( _path.getFileName( ) + ".tmp" );
+
+        try ( OutputStream outputStream = Files.newOutputStream( tmpPath ); DataOutputStream out = new DataOutputStream( new BufferedOutputStream( outputStream ) ) )
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            out.writeInt( mapParts.size( ) );
+
+            for ( Map.Entry<Part, byte [ ]> part : mapParts.entrySet( ) )
+            {
+                out.writeByte( part.getKey( ).ordinal( ) );
+                out.writeLong( mapLoadedAt.get( part.getKey( ) ) );
+                out.writeInt( part.getValue( ).length );
+                out.write( part.getValue( ) );
+            }
+        }
+
+        Files.move( tmpPath, _path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Read the parts stored in the file
+     * 
+     * @return the raw values (lists) by part, with their loading time; empty if the file doesn't exist
+     * @throws IOException
+     *             if the file can't be read or is invalid
+     */
+    public Map<Part, ReferentialSnapshot.Entry<Object>> load( ) throws IOException
+    {
+        Map<Part, ReferentialSnapshot.Entry<Object>> mapEntries = new EnumMap<>( Part.class );
+
+        if ( !Files.isRegularFile( _path ) )
+        {
+            return mapEntries;
+        }
+
+        try ( FileChannel channel = FileChannel.open( _path, StandardOpenOption.READ ) )
+        {
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size( ) );
+
+            if ( buffer.getInt( ) != MAGIC || buffer.getInt( ) != FORMAT_VERSION )
+            {
+                throw new IOException( "Invalid referential snapshot file " + _path );
+            }
+
+            int nParts = buffer.getInt( );
+            for ( int i = 0; i < nParts; i++ )
+            {
+                Part part = Part.values( ) [buffer.get( )];
+                long lLoadedAt = buffer.getLong( );
+                int nLength = buffer.getInt( );
+
+                ByteBuffer slice = buffer.slice( );
+                slice.limit( nLength );
+                buffer.position( buffer.position( ) + nLength );
+
+                try ( InputStream inputStream = new ByteBufferBackedInputStream( slice ) )
+                {
+                    Object value = NotificationStoreUtils.getReader( getType( part ) ).readValue( inputStream );
+                    mapEntries.put( part, new ReferentialSnapshot.Entry<>( value, lLoadedAt, false ) );
+                }
+            }
+        }
+        catch( RuntimeException e )
+        {
+            throw new IOException( "Invalid referential snapshot file " + _path, e );
+        }
+
+        return mapEntries;
+    }
+
+    /**
+     * @param part
+     * @return the type of the list stored for the part
+     */
+    private static TypeReference<?> getType( Part part )
+    {
+        switch( part )
+        {
+            case STATUS:
+                return NotificationStoreUtils.TYPE_TEMPORARY_STATUS_LIST;
+            case CATEGORIES:
+                return NotificationStoreUtils.TYPE_DEMAND_CATEGORY_LIST;
+            case DEMAND_TYPES:
+                return NotificationStoreUtils.TYPE_DEMAND_TYPE_LIST;
+            case GENERIC_STATUS:
+                return NotificationStoreUtils.TYPE_REFERENCE_LIST;
+            default:
+                throw new IllegalArgumentException( part.name( ) );
+        }
+    }
+}
@@ -43,6 +43,10 @@ public class NotificationStoreConstants
     public static final String QUERY_PARAM_CATEGORY_CODE = "categoryCode";
     public static final String QUERY_PARAM_DIRECTION_DATE_ORDERBY = "directionDateOrderBy";
     
+    //DEMAND PAIRS (getNotificationsByDemandList)
+    public static final String PAIR_DEMAND_ID = "demandId";
+    public static final String PAIR_DEMAND_TYPE_ID = "demandTypeId";
+    
     //CATEGORY
     public static final String QUERY_PARAM_ID = "id";
     public static final String QUERY_PARAM_CODE = "code";
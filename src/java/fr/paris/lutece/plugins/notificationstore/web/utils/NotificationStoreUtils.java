@@ -33,11 +33,32 @@
  */
 package fr.paris.lutece.plugins.notificationstore.web.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandCategory;
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.grubusiness.business.demand.TemporaryStatus;
+import fr.paris.lutece.plugins.grubusiness.business.notification.ReassignNotificationsRequest;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.DemandResult;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
+import fr.paris.lutece.util.ReferenceList;
 
 /**
  * 
@@ -46,7 +67,40 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class NotificationStoreUtils
 {
-    private static ObjectMapper _mapper = null;
+    // Types read from the NotificationStore responses
+    public static final TypeReference<DemandResult> TYPE_DEMAND_RESULT = new TypeReference<DemandResult>( ){};
+    public static final TypeReference<NotificationResult> TYPE_NOTIFICATION_RESULT = new TypeReference<NotificationResult>( ){};
+    public static final TypeReference<DemandCategory> TYPE_DEMAND_CATEGORY = new TypeReference<DemandCategory>( ){};
+    public static final TypeReference<List<DemandCategory>> TYPE_DEMAND_CATEGORY_LIST = new TypeReference<List<DemandCategory>>( ){};
+    public static final TypeReference<DemandType> TYPE_DEMAND_TYPE = new TypeReference<DemandType>( ){};
+    public static final TypeReference<List<DemandType>> TYPE_DEMAND_TYPE_LIST = new TypeReference<List<DemandType>>( ){};
+    public static final TypeReference<TemporaryStatus> TYPE_TEMPORARY_STATUS = new TypeReference<TemporaryStatus>( ){};
+    public static final TypeReference<List<TemporaryStatus>> TYPE_TEMPORARY_STATUS_LIST = new TypeReference<List<TemporaryStatus>>( ){};
+    public static final TypeReference<ReferenceList> TYPE_REFERENCE_LIST = new TypeReference<ReferenceList>( ){};
+
+    private static final ObjectMapper _mapper = createMapper( );
+
+    // readers and writers are immutable and thread-safe : they are built once, with their root (de)serializer
+    private static final Map<Type, ObjectReader> _mapReaders = new ConcurrentHashMap<>( );
+    private static final Map<Class<?>, ObjectWriter> _mapWriters = new ConcurrentHashMap<>( );
+
+    static
+    {
+        for ( TypeReference<?> typeReference : new TypeReference<?> [ ] {
+                TYPE_DEMAND_RESULT, TYPE_NOTIFICATION_RESULT, TYPE_DEMAND_CATEGORY, TYPE_DEMAND_CATEGORY_LIST, TYPE_DEMAND_TYPE, TYPE_DEMAND_TYPE_LIST,
+                TYPE_TEMPORARY_STATUS, TYPE_TEMPORARY_STATUS_LIST, TYPE_REFERENCE_LIST
+        } )
+        {
+            getReader( typeReference );
+        }
+
+        for ( Class<?> clazz : new Class<?> [ ] {
+                DemandCategory.class, DemandType.class, TemporaryStatus.class, ReassignNotificationsRequest.class
+        } )
+        {
+            getWriter( clazz );
+        }
+    }
 
     /**
      * Private constructor
@@ -56,18 +110,93 @@ public class NotificationStoreUtils
 
     }
 
+    /**
+     * @return the configured ObjectMapper
+     */
+    private static ObjectMapper createMapper( )
+    {
+        ObjectMapper mapper = new ObjectMapper( );
+        mapper.configure( DeserializationFeature.UNWRAP_ROOT_VALUE, false );
+        mapper.configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+
+        return mapper;
+    }
+
     /**
      * ObjectMapper
      */
     public static ObjectMapper getMapper( )
     {
-        if ( _mapper == null )
+        return _mapper;
+    }
+
+    /**
+     * Get the reader of a type, built on first use
+     * 
+     * @param typeReference
+     *            the type
+     * @return the reader
+     */
+    public static ObjectReader getReader( TypeReference<?> typeReference )
+    {
+        return _mapReaders.computeIfAbsent( typeReference.getType( ), type -> _mapper.readerFor( _mapper.getTypeFactory( ).constructType( type ) ) );
+    }
+
+    /**
+     * Get the writer of a class, built on first use
+     * 
+     * @param clazz
+     *            the class
+     * @return the writer
+     */
+    public static ObjectWriter getWriter( Class<?> clazz )
+    {
+        return _mapWriters.computeIfAbsent( clazz, _mapper::writerFor );
+    }
+
+    /**
+     * Build the key of a (demand id, demand type id) pair, to match the notifications of a demand list with their demands
+     * 
+     * @param strDemandId
+     *            the demand id
+     * @param strDemandTypeId
+     *            the demand type id
+     * @return the key
+     */
+    public static String demandPairKey( String strDemandId, String strDemandTypeId )
+    {
+        return strDemandId + '|' + strDemandTypeId;
+    }
+
+    /**
+     * Converts an object to json
+     * 
+     * @param object
+     *            the object
+     * @return the json String
+     * @throws JsonProcessingException
+     */
+    public static String objectToJson( Object object ) throws JsonProcessingException
+    {
+        if ( object == null )
         {
-            _mapper = new ObjectMapper( );
-            _mapper.configure( DeserializationFeature.UNWRAP_ROOT_VALUE, false );
-            _mapper.configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+            return _mapper.writeValueAsString( null );
         }
-        return _mapper;
+
+        return getWriter( object.getClass( ) ).writeValueAsString( object );
+    }
+
+    /**
+     * Read a json tree
+     * 
+     * @param jsonStr
+     *            the json string value
+     * @return the tree
+     * @throws JsonProcessingException
+     */
+    public static JsonNode readTree( String jsonStr ) throws JsonProcessingException
+    {
+        return _mapper.readTree( jsonStr );
     }
 
     /**
@@ -83,9 +212,93 @@ public class NotificationStoreUtils
      */
     public static <T> T jsonToObject( String jsonStr, TypeReference<T> typeReference ) throws JsonProcessingException
     {
-        T response = getMapper( ).readValue( jsonStr, typeReference );
+        T response = getReader( typeReference ).readValue( jsonStr );
 
         return response;
     }
 
+    /**
+     * Converts json stream response to the desired subclass instance, without loading the whole response as a String.
+     *
+     * @param inputStream
+     *            the json stream (UTF-8)
+     * @param typeReference
+     * 
+     * @return the desired subclass instance
+     * @throws IOException
+     */
+    public static <T> T jsonToObject( InputStream inputStream, TypeReference<T> typeReference ) throws IOException
+    {
+        return getReader( typeReference ).readValue( inputStream );
+    }
+
+    /**
+     * Converts the "result" field of a json String response to the desired subclass instance.
+     * The parser goes straight to the field, the rest of the envelope is skipped.
+     *
+     * @param jsonStr
+     *            the json string value
+     * @param typeReference
+     * 
+     * @return the desired subclass instance
+     * @throws IOException
+     */
+    public static <T> T resultToObject( String jsonStr, TypeReference<T> typeReference ) throws IOException
+    {
+        try ( JsonParser parser = _mapper.getFactory( ).createParser( jsonStr ) )
+        {
+            return readResult( parser, typeReference );
+        }
+    }
+
+    /**
+     * Converts the "result" field of a json stream response to the desired subclass instance.
+     * The parser goes straight to the field, the rest of the envelope is skipped.
+     *
+     * @param inputStream
+     *            the json stream (UTF-8)
+     * @param typeReference
+     * 
+     * @return the desired subclass instance
+     * @throws IOException
+     */
+    public static <T> T resultToObject( InputStream inputStream, TypeReference<T> typeReference ) throws IOException
+    {
+        try ( JsonParser parser = _mapper.getFactory( ).createParser( inputStream ) )
+        {
+            return readResult( parser, typeReference );
+        }
+    }
+
+    /**
+     * bind the "result" field of the envelope
+     * 
+     * @param parser
+     * @param typeReference
+     * @return the desired subclass instance
+     * @throws IOException
+     */
+    private static <T> T readResult( JsonParser parser, TypeReference<T> typeReference ) throws IOException
+    {
+        if ( parser.nextToken( ) != JsonToken.START_OBJECT )
+        {
+            throw new JsonParseException( parser, "The response is not a json object" );
+        }
+
+        while ( parser.nextToken( ) == JsonToken.FIELD_NAME )
+        {
+            String strFieldName = parser.getCurrentName( );
+            parser.nextToken( );
+
+            if ( NotificationStoreConstants.JSON_RESULT.equals( strFieldName ) )
+            {
+                return getReader( typeReference ).readValue( parser );
+            }
+
+            parser.skipChildren( );
+        }
+
+        throw new JsonParseException( parser, "No " + NotificationStoreConstants.JSON_RESULT + " field in the response" );
+    }
+
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IHttpTransportProvider;
+
+/**
+ * CircuitBreakerHttpTransport tests
+ */
+public class CircuitBreakerHttpTransportTest
+{
+    private static final String API_END_POINT = "http://localhost/notificationstore/api/v1/";
+    private static final String URL_DEMAND_LIST = API_END_POINT + "demand/list";
+    private static final String ENDPOINT_DEMAND_LIST = "demand/list";
+    private static final long OPEN_DURATION = 100;
+
+    private StubTransport _stub;
+    private CircuitBreakerHttpTransport _transport;
+
+    @Before
+    public void setUp( )
+    {
+        _stub = new StubTransport( );
+        _transport = new CircuitBreakerHttpTransport( _stub );
+        _transport.setWindowSize( 4 );
+        _transport.setMinimumCalls( 4 );
+        _transport.setFailureRateThreshold( 50 );
+        _transport.setSlowCallDuration( 10000 );
+        _transport.setOpenDuration( OPEN_DURATION );
+        _transport.setHalfOpenCalls( 2 );
+    }
+
+    @Test
+    public void testStaysClosedBelowThreshold( )
+    {
+        call( 200 );
+        call( 503 );
+        call( 200 );
+        call( 200 );
+
+        assertEquals( "CLOSED", getState( ) );
+    }
+
+    @Test
+    public void testOpensOnFailureRate( )
+    {
+        call( 200 );
+        call( 503 );
+        call( 200 );
+        call( 503 );
+
+        assertEquals( "OPEN", getState( ) );
+
+        // the requests fail immediately, without calling the transport
+        int nCalls = _stub._calls.get( );
+        assertRejected( );
+        assertEquals( nCalls, _stub._calls.get( ) );
+    }
+
+    @Test
+    public void testClientErrorsDontOpen( )
+    {
+        for ( int i = 0; i < 4; i++ )
+        {
+            call( 404 );
+        }
+
+        assertEquals( "CLOSED", getState( ) );
+    }
+
+    @Test
+    public void testLocalRejectionsDontOpen( )
+    {
+        // the requests rejected by the concurrency limit are not sent to the server
+        _stub._bRejected = true;
+        for ( int i = 0; i < 4; i++ )
+        {
+            try
+            {
+                _transport.doGet( URL_DEMAND_LIST, new HashMap<>( ), new HashMap<>( ) );
+                fail( "the request must be rejected" );
+            }
+            catch( ConcurrencyLimitException e )
+            {
+                // expected
+            }
+        }
+
+        assertEquals( "CLOSED", getState( ) );
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes( ) throws InterruptedException
+    {
+        open( );
+        Thread.sleep( OPEN_DURATION + 50 );
+
+        call( 200 );
+        assertEquals( "HALF_OPEN", getState( ) );
+        call( 200 );
+        assertEquals( "CLOSED", getState( ) );
+
+        // the window is reset : a single failure doesn't reopen the circuit
+        call( 503 );
+        assertEquals( "CLOSED", getState( ) );
+    }
+
+    @Test
+    public void testReopensOnFailedProbe( ) throws InterruptedException
+    {
+        open( );
+        Thread.sleep( OPEN_DURATION + 50 );
+
+        call( 503 );
+
+        assertEquals( "OPEN", getState( ) );
+        assertRejected( );
+    }
+
+    @Test
+    public void testOneCircuitPerEndpoint( )
+    {
+        open( );
+
+        // the ids are not part of the endpoint : all the customers share one circuit
+        _stub._nStatus = 200;
+        _transport.doDelete( API_END_POINT + "demand/customerWithoutDigits", new HashMap<>( ) );
+        _transport.doDelete( API_END_POINT + "demand/otherCustomer", new HashMap<>( ) );
+
+        Map<String, String> mapStates = _transport.getStates( );
+        assertEquals( 2, mapStates.size( ) );
+        assertEquals( "OPEN", mapStates.get( ENDPOINT_DEMAND_LIST ) );
+        assertEquals( "CLOSED", mapStates.get( "demand/*" ) );
+    }
+
+    /**
+     * open the circuit of the demand list
+     */
+    private void open( )
+    {
+        for ( int i = 0; i < 4; i++ )
+        {
+            call( 503 );
+        }
+        assertEquals( "OPEN", getState( ) );
+    }
+
+    /**
+     * call the demand list
+     * 
+     * @param nStatus
+     *            the status of the response
+     */
+    private void call( int nStatus )
+    {
+        _stub._nStatus = nStatus;
+        try
+        {
+            _transport.doGet( URL_DEMAND_LIST, new HashMap<>( ), new HashMap<>( ) );
+        }
+        catch( CircuitBreakerOpenException e )
+        {
+            throw e;
+        }
+        catch( HttpTransportException e )
+        {
+            assertEquals( nStatus, e.getStatusCode( ) );
+        }
+    }
+
+    private void assertRejected( )
+    {
+        try
+        {
+            _transport.doGet( URL_DEMAND_LIST, new HashMap<>( ), new HashMap<>( ) );
+            fail( "the circuit must be open" );
+        }
+        catch( CircuitBreakerOpenException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * @return the state of the circuit of the demand list
+     */
+    private String getState( )
+    {
+        return _transport.getStates( ).get( ENDPOINT_DEMAND_LIST );
+    }
+
+    /**
+     * Transport answering with a given status
+     */
+    private static final class StubTransport implements IHttpTransportProvider
+    {
+        private final AtomicInteger _calls = new AtomicInteger( );
+        private volatile int _nStatus = 200;
+        private volatile boolean _bRejected;
+        private String _strApiEndPointUrl = API_END_POINT;
+
+        private String respond( String strEndPointUrl )
+        {
+            _calls.incrementAndGet( );
+            if ( _bRejected )
+            {
+                throw new ConcurrencyLimitException( strEndPointUrl );
+            }
+            if ( _nStatus >= 300 )
+            {
+                throw new HttpTransportException( "GET " + strEndPointUrl + " failed", _nStatus, 1, null );
+            }
+
+            return "{}";
+        }
+
+        @Override
+        public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+
+        @Override
+        public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+
+        @Override
+        public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+
+        @Override
+        public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+
+        @Override
+        public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+
+        @Override
+        public void setApiEndPointUrl( String strApiEndPointUrl )
+        {
+            _strApiEndPointUrl = strApiEndPointUrl;
+        }
+
+        @Override
+        public String getApiEndPointUrl( )
+        {
+            return _strApiEndPointUrl;
+        }
+
+        @Override
+        public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+        {
+            return respond( strEndPointUrl );
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.IAsyncHttpTransportProvider;
+
+/**
+ * ConcurrencyLimitHttpTransport tests of the non-blocking requests
+ */
+public class ConcurrencyLimitHttpTransportTest
+{
+    private static final String API_END_POINT = "http://localhost/notificationstore/api/v1/";
+    private static final String URL_DEMAND_LIST = API_END_POINT + "demand/list";
+    private static final String ENDPOINT_DEMAND_LIST = "demand/list";
+
+    private AsyncStubTransport _stub;
+    private ConcurrencyLimitHttpTransport _transport;
+
+    @Before
+    public void setUp( )
+    {
+        _stub = new AsyncStubTransport( );
+        _transport = new ConcurrencyLimitHttpTransport( _stub );
+        _transport.setInitialLimit( 1 );
+        _transport.setMinLimit( 1 );
+        _transport.setMaxLimit( 1 );
+        _transport.setLatencyThreshold( 10000 );
+    }
+
+    @Test
+    public void testQueuedCallSentWhenSlotReleased( )
+    {
+        CompletableFuture<String> first = call( );
+        CompletableFuture<String> second = call( );
+
+        assertEquals( 1, _stub._requests.size( ) );
+        assertEquals( 1, (int) _transport.getQueueDepths( ).get( ENDPOINT_DEMAND_LIST ) );
+
+        _stub._requests.get( 0 ).complete( "first" );
+        assertEquals( "first", first.join( ) );
+        assertEquals( 2, _stub._requests.size( ) );
+
+        _stub._requests.get( 1 ).complete( "second" );
+        assertEquals( "second", second.join( ) );
+        assertEquals( 0, getInFlight( ) );
+    }
+
+    @Test
+    public void testCancelledQueuedCallGivesUpItsPlace( )
+    {
+        call( );
+        CompletableFuture<String> second = call( );
+
+        second.cancel( true );
+        assertEquals( 0, (int) _transport.getQueueDepths( ).get( ENDPOINT_DEMAND_LIST ) );
+
+        // the released slot is not granted to the cancelled call
+        _stub._requests.get( 0 ).complete( "first" );
+        assertEquals( 1, _stub._requests.size( ) );
+        assertEquals( 0, getInFlight( ) );
+    }
+
+    @Test
+    public void testCancelAbortsTheRequest( )
+    {
+        CompletableFuture<String> first = call( );
+
+        first.cancel( true );
+
+        assertTrue( _stub._requests.get( 0 ).isCancelled( ) );
+        assertEquals( 0, getInFlight( ) );
+    }
+
+    @Test
+    public void testSynchronousFailureReleasesTheSlot( )
+    {
+        _stub._bThrow = true;
+        CompletableFuture<String> first = call( );
+
+        assertTrue( first.isCompletedExceptionally( ) );
+        assertEquals( 0, getInFlight( ) );
+
+        // the next call gets the slot
+        _stub._bThrow = false;
+        CompletableFuture<String> second = call( );
+        _stub._requests.get( 0 ).complete( "second" );
+        assertEquals( "second", second.join( ) );
+    }
+
+    /**
+     * @return the future response of a non-blocking call of the demand list
+     */
+    private CompletableFuture<String> call( )
+    {
+        return _transport.doGetAsync( URL_DEMAND_LIST, new HashMap<>( ), new HashMap<>( ) );
+    }
+
+    /**
+     * @return the number of calls in flight on the demand list
+     */
+    private int getInFlight( )
+    {
+        return _transport.getInFlight( ).get( ENDPOINT_DEMAND_LIST );
+    }
+
+    /**
+     * Non-blocking transport whose responses are completed by the tests
+     */
+    private static final class AsyncStubTransport implements IAsyncHttpTransportProvider
+    {
+        private final List<CompletableFuture<String>> _requests = new CopyOnWriteArrayList<>( );
+        private volatile boolean _bThrow;
+        private String _strApiEndPointUrl = API_END_POINT;
+
+        private CompletableFuture<String> send( )
+        {
+            if ( _bThrow )
+            {
+                throw new IllegalStateException( "request can't be built" );
+            }
+
+            CompletableFuture<String> request = new CompletableFuture<>( );
+            _requests.add( request );
+
+            return request;
+        }
+
+        @Override
+        public CompletableFuture<String> doGetAsync( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return send( );
+        }
+
+        @Override
+        public CompletableFuture<String> doPostJsonAsync( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+        {
+            return send( );
+        }
+
+        @Override
+        public String doGet( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+
+        @Override
+        public String doPost( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+
+        @Override
+        public String doPostJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+
+        @Override
+        public String doPut( String strEndPointUrl, Map<String, String> mapParams, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+
+        @Override
+        public String doPutJson( String strEndPointUrl, String json, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+
+        @Override
+        public void setApiEndPointUrl( String strApiEndPointUrl )
+        {
+            _strApiEndPointUrl = strApiEndPointUrl;
+        }
+
+        @Override
+        public String getApiEndPointUrl( )
+        {
+            return _strApiEndPointUrl;
+        }
+
+        @Override
+        public String doDelete( String strEndPointUrl, Map<String, String> mapHeadersRequest )
+        {
+            return send( ).join( );
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.rs.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.Demand;
+import fr.paris.lutece.plugins.grubusiness.business.notification.Notification;
+import fr.paris.lutece.plugins.grubusiness.business.web.rs.NotificationResult;
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+import fr.paris.lutece.plugins.notificationstore.web.utils.NotificationStoreConstants;
+
+/**
+ * NotificationRequestCoalescer tests
+ */
+public class NotificationRequestCoalescerTest
+{
+    private static final String CUSTOMER_ID = "customer";
+    private static final String DEMAND_TYPE_ID = "type";
+    private static final String NOTIFICATION_TYPE = "MYDASHBOARD";
+
+    private final ExecutorService _callers = Executors.newCachedThreadPool( );
+    private final AtomicInteger _loads = new AtomicInteger( );
+    private NotificationRequestCoalescer _coalescer;
+
+    @After
+    public void tearDown( )
+    {
+        _callers.shutdownNow( );
+        if ( _coalescer != null )
+        {
+            _coalescer.shutdown( );
+        }
+    }
+
+    @Test
+    public void testDemultiplexBatch( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( this::load, 300, 50 );
+
+        List<Future<NotificationResult>> listResults = requestConcurrently( "demand1", "demand2", "demand3" );
+
+        for ( int i = 0; i < listResults.size( ); i++ )
+        {
+            // each caller gets the notifications of its demand only
+            List<Notification> listNotifications = listResults.get( i ).get( 5, TimeUnit.SECONDS ).getNotifications( );
+            assertEquals( 2, listNotifications.size( ) );
+            for ( Notification notification : listNotifications )
+            {
+                assertEquals( "demand" + ( i + 1 ), notification.getDemand( ).getId( ) );
+            }
+        }
+
+        assertEquals( 1, _loads.get( ) );
+        assertEquals( 1, _coalescer.getBatchCount( ) );
+        assertEquals( 3, _coalescer.getRequestCount( ) );
+    }
+
+    @Test
+    public void testSameDemandSharesResult( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( this::load, 300, 50 );
+
+        List<Future<NotificationResult>> listResults = requestConcurrently( "demand1", "demand1" );
+
+        List<Notification> listNotifications1 = listResults.get( 0 ).get( 5, TimeUnit.SECONDS ).getNotifications( );
+        List<Notification> listNotifications2 = listResults.get( 1 ).get( 5, TimeUnit.SECONDS ).getNotifications( );
+        assertEquals( 2, listNotifications1.size( ) );
+        assertEquals( 2, listNotifications2.size( ) );
+        assertEquals( 1, _loads.get( ) );
+
+        // each caller can modify its own list
+        assertNotSame( listNotifications1, listNotifications2 );
+        listNotifications1.clear( );
+        assertEquals( 2, listNotifications2.size( ) );
+    }
+
+    @Test
+    public void testFullBatchSentBeforeWindow( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( this::load, 60000, 2 );
+
+        List<Future<NotificationResult>> listResults = requestConcurrently( "demand1", "demand2" );
+
+        assertEquals( 2, listResults.get( 0 ).get( 5, TimeUnit.SECONDS ).getNotifications( ).size( ) );
+        assertEquals( 2, listResults.get( 1 ).get( 5, TimeUnit.SECONDS ).getNotifications( ).size( ) );
+        assertEquals( 1, _loads.get( ) );
+    }
+
+    @Test
+    public void testDemandWithoutNotification( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( ( strCustomerId, listDemandPairs, strNotificationType ) -> new NotificationResult( ), 10, 50 );
+
+        NotificationResult result = _coalescer.getListNotification( CUSTOMER_ID, "demand1", DEMAND_TYPE_ID, NOTIFICATION_TYPE );
+
+        assertTrue( result.getNotifications( ).isEmpty( ) );
+    }
+
+    @Test
+    public void testFailureGivenToAllCallers( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( ( strCustomerId, listDemandPairs, strNotificationType ) -> {
+            throw new NotificationException( "NotificationStore down" );
+        }, 300, 50 );
+
+        for ( Future<NotificationResult> result : requestConcurrently( "demand1", "demand2" ) )
+        {
+            try
+            {
+                result.get( 5, TimeUnit.SECONDS );
+                fail( "the failure of the batch must be thrown to each caller" );
+            }
+            catch( ExecutionException e )
+            {
+                assertTrue( e.getCause( ) instanceof NotificationException );
+                assertEquals( "NotificationStore down", e.getCause( ).getMessage( ) );
+            }
+        }
+    }
+
+    @Test
+    public void testUnattributedNotificationLoadedByDemand( ) throws Exception
+    {
+        AtomicInteger demandLoads = new AtomicInteger( );
+        _coalescer = new NotificationRequestCoalescer( this::loadWithOtherTypeId, ( strCustomerId, strIdDemand, strIdDemandType, strNotificationType ) -> {
+            demandLoads.incrementAndGet( );
+            NotificationResult result = new NotificationResult( );
+            result.getNotifications( ).add( getNotification( strIdDemand, strIdDemandType ) );
+            return result;
+        }, 300, 50, 4 );
+
+        List<Future<NotificationResult>> listResults = requestConcurrently( "demand1", "demand2" );
+
+        // demand1 is answered by the batch, demand2 has a notification with another type id : it is loaded on its own
+        assertEquals( 2, listResults.get( 0 ).get( 5, TimeUnit.SECONDS ).getNotifications( ).size( ) );
+        List<Notification> listNotifications = listResults.get( 1 ).get( 5, TimeUnit.SECONDS ).getNotifications( );
+        assertEquals( 1, listNotifications.size( ) );
+        assertEquals( "demand2", listNotifications.get( 0 ).getDemand( ).getId( ) );
+        assertEquals( 1, demandLoads.get( ) );
+    }
+
+    @Test
+    public void testUnattributedNotificationFailsWithoutDemandLoader( ) throws Exception
+    {
+        _coalescer = new NotificationRequestCoalescer( this::loadWithOtherTypeId, 300, 50 );
+
+        List<Future<NotificationResult>> listResults = requestConcurrently( "demand1", "demand2" );
+
+        assertEquals( 2, listResults.get( 0 ).get( 5, TimeUnit.SECONDS ).getNotifications( ).size( ) );
+        try
+        {
+            listResults.get( 1 ).get( 5, TimeUnit.SECONDS );
+            fail( "a demand with notifications which can't be attributed must not get an empty result" );
+        }
+        catch( ExecutionException e )
+        {
+            assertTrue( e.getCause( ) instanceof NotificationException );
+        }
+    }
+
+    /**
+     * request the notifications of demands from concurrent callers
+     * 
+     * @param demandIds
+     * @return the results, in the order of the demands
+     * @throws InterruptedException
+     */
+    private List<Future<NotificationResult>> requestConcurrently( String... demandIds ) throws InterruptedException
+    {
+        CountDownLatch ready = new CountDownLatch( demandIds.length );
+        CountDownLatch start = new CountDownLatch( 1 );
+        List<Future<NotificationResult>> listResults = new ArrayList<>( );
+
+        for ( String strDemandId : demandIds )
+        {
+            listResults.add( _callers.submit( ( ) -> {
+                ready.countDown( );
+                start.await( );
+                return _coalescer.getListNotification( CUSTOMER_ID, strDemandId, DEMAND_TYPE_ID, NOTIFICATION_TYPE );
+            } ) );
+        }
+
+        ready.await( );
+        start.countDown( );
+
+        return listResults;
+    }
+
+    /**
+     * bulk loader : two notifications for each demand, plus a notification of a demand which was not requested
+     */
+    private NotificationResult load( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType )
+    {
+        _loads.incrementAndGet( );
+
+        NotificationResult result = new NotificationResult( );
+        for ( Map<String, String> mapPair : listDemandPairs )
+        {
+            String strDemandId = mapPair.get( NotificationStoreConstants.PAIR_DEMAND_ID );
+            String strDemandTypeId = mapPair.get( NotificationStoreConstants.PAIR_DEMAND_TYPE_ID );
+            result.getNotifications( ).add( getNotification( strDemandId, strDemandTypeId ) );
+            result.getNotifications( ).add( getNotification( strDemandId, strDemandTypeId ) );
+        }
+        result.getNotifications( ).add( getNotification( "other", DEMAND_TYPE_ID ) );
+
+        return result;
+    }
+
+    /**
+     * bulk loader : two notifications for demand1, and a notification of demand2 with another demand type id
+     */
+    private NotificationResult loadWithOtherTypeId( String strCustomerId, List<Map<String, String>> listDemandPairs, String strNotificationType )
+    {
+        _loads.incrementAndGet( );
+
+        NotificationResult result = new NotificationResult( );
+        result.getNotifications( ).add( getNotification( "demand1", DEMAND_TYPE_ID ) );
+        result.getNotifications( ).add( getNotification( "demand1", DEMAND_TYPE_ID ) );
+        result.getNotifications( ).add( getNotification( "demand2", "otherType" ) );
+
+        return result;
+    }
+
+    /**
+     * @param strDemandId
+     * @param strDemandTypeId
+     * @return a notification of the demand
+     */
+    private static Notification getNotification( String strDemandId, String strDemandTypeId )
+    {
+        Demand demand = new Demand( );
+        demand.setId( strDemandId );
+        demand.setTypeId( strDemandTypeId );
+
+        Notification notification = new Notification( );
+        notification.setDemand( demand );
+
+        return notification;
+    }
+}
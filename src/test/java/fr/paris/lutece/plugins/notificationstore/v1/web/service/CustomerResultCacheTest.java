@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * CustomerResultCache tests
+ */
+public class CustomerResultCacheTest
+{
+    private static final String CUSTOMER_1 = "customer1";
+    private static final String CUSTOMER_2 = "customer2";
+
+    @Test
+    public void testPutAndGet( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 10, 0 );
+
+        assertNull( cache.get( "key" ) );
+        assertTrue( cache.put( CUSTOMER_1, "key", "result", cache.getGeneration( ) ) );
+        assertEquals( "result", cache.get( "key" ) );
+        assertEquals( 1, cache.getHitCount( ) );
+        assertEquals( 1, cache.getMissCount( ) );
+    }
+
+    @Test
+    public void testKey( )
+    {
+        assertEquals( CustomerResultCache.key( "a", null, "b" ), CustomerResultCache.key( "a", null, "b" ) );
+        assertFalse( CustomerResultCache.key( "a", "b" ).equals( CustomerResultCache.key( "ab" ) ) );
+        assertFalse( CustomerResultCache.key( "a", null ).equals( CustomerResultCache.key( null, "a" ) ) );
+    }
+
+    @Test
+    public void testExpiredEntry( ) throws InterruptedException
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 0, 10, 0 );
+
+        cache.put( CUSTOMER_1, "key", "result", cache.getGeneration( ) );
+        Thread.sleep( 5 );
+
+        assertNull( cache.get( "key" ) );
+        assertEquals( 0, cache.size( ) );
+        assertEquals( 0, cache.getEstimatedBytes( ) );
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedEntry( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 2, 0 );
+
+        cache.put( CUSTOMER_1, "key1", "result1", cache.getGeneration( ) );
+        cache.put( CUSTOMER_1, "key2", "result2", cache.getGeneration( ) );
+        cache.get( "key1" );
+        cache.put( CUSTOMER_2, "key3", "result3", cache.getGeneration( ) );
+
+        assertEquals( 2, cache.size( ) );
+        assertEquals( "result1", cache.get( "key1" ) );
+        assertNull( cache.get( "key2" ) );
+        assertEquals( "result3", cache.get( "key3" ) );
+    }
+
+    @Test
+    public void testEvictOnSize( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 100, 100, String::length );
+
+        cache.put( CUSTOMER_1, "key1", repeat( 'a', 40 ), cache.getGeneration( ) );
+        cache.put( CUSTOMER_1, "key2", repeat( 'b', 40 ), cache.getGeneration( ) );
+        cache.put( CUSTOMER_2, "key3", repeat( 'c', 40 ), cache.getGeneration( ) );
+
+        assertEquals( 2, cache.size( ) );
+        assertEquals( 80, cache.getEstimatedBytes( ) );
+        assertNull( cache.get( "key1" ) );
+
+        // a result larger than the whole cache is not cached
+        assertFalse( cache.put( CUSTOMER_1, "key4", repeat( 'd', 101 ), cache.getGeneration( ) ) );
+        assertEquals( 2, cache.size( ) );
+    }
+
+    @Test
+    public void testReplaceEntry( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 10, 0, String::length );
+
+        cache.put( CUSTOMER_1, "key", "result", cache.getGeneration( ) );
+        cache.put( CUSTOMER_1, "key", "new result", cache.getGeneration( ) );
+
+        assertEquals( 1, cache.size( ) );
+        assertEquals( 10, cache.getEstimatedBytes( ) );
+        assertEquals( "new result", cache.get( "key" ) );
+    }
+
+    @Test
+    public void testInvalidateCustomer( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 10, 0, String::length );
+
+        cache.put( CUSTOMER_1, "key1", "result1", cache.getGeneration( ) );
+        cache.put( CUSTOMER_1, "key2", "result2", cache.getGeneration( ) );
+        cache.put( CUSTOMER_2, "key3", "result3", cache.getGeneration( ) );
+
+        cache.invalidate( CUSTOMER_1 );
+
+        assertNull( cache.get( "key1" ) );
+        assertNull( cache.get( "key2" ) );
+        assertEquals( "result3", cache.get( "key3" ) );
+        assertEquals( 1, cache.size( ) );
+        assertEquals( 7, cache.getEstimatedBytes( ) );
+    }
+
+    @Test
+    public void testRefuseResultLoadedBeforeInvalidation( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 10, 0 );
+
+        long lGeneration = cache.getGeneration( );
+        cache.invalidate( CUSTOMER_1 );
+
+        assertFalse( cache.put( CUSTOMER_1, "key1", "stale result", lGeneration ) );
+        assertNull( cache.get( "key1" ) );
+
+        // the other customers are not affected
+        assertTrue( cache.put( CUSTOMER_2, "key2", "result", lGeneration ) );
+
+        // a result loaded after the invalidation is cached
+        assertTrue( cache.put( CUSTOMER_1, "key1", "result", cache.getGeneration( ) ) );
+    }
+
+    @Test
+    public void testRefuseResultLoadedBeforeForgottenInvalidation( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 2, 0 );
+
+        long lGeneration = cache.getGeneration( );
+        cache.invalidate( CUSTOMER_1 );
+        cache.invalidate( "customer3" );
+        cache.invalidate( "customer4" );
+
+        // the invalidation of customer1 is forgotten, but the results loaded before it are still refused
+        assertFalse( cache.put( CUSTOMER_1, "key1", "stale result", lGeneration ) );
+        assertTrue( cache.put( CUSTOMER_1, "key1", "result", cache.getGeneration( ) ) );
+    }
+
+    @Test
+    public void testClear( )
+    {
+        CustomerResultCache<String> cache = new CustomerResultCache<>( 60, 10, 0 );
+
+        cache.put( CUSTOMER_1, "key1", "result1", cache.getGeneration( ) );
+        long lGeneration = cache.getGeneration( );
+        cache.clear( );
+
+        assertEquals( 0, cache.size( ) );
+        assertEquals( 0, cache.getEstimatedBytes( ) );
+        assertFalse( cache.put( CUSTOMER_2, "key2", "stale result", lGeneration ) );
+        assertTrue( cache.put( CUSTOMER_2, "key2", "result", cache.getGeneration( ) ) );
+    }
+
+    /**
+     * @param c
+     * @param nLength
+     * @return a string of nLength c
+     */
+    private static String repeat( char c, int nLength )
+    {
+        StringBuilder sb = new StringBuilder( );
+        for ( int i = 0; i < nLength; i++ )
+        {
+            sb.append( c );
+        }
+
+        return sb.toString( );
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import fr.paris.lutece.plugins.grubusiness.service.notification.NotificationException;
+
+/**
+ * NotificationStoreExecutor tests
+ */
+public class NotificationStoreExecutorTest
+{
+    private NotificationStoreExecutor _executor;
+
+    @After
+    public void tearDown( )
+    {
+        if ( _executor != null )
+        {
+            _executor.shutdown( );
+        }
+    }
+
+    @Test
+    public void testInvokeAll( ) throws NotificationException
+    {
+        _executor = new NotificationStoreExecutor( false, 4 );
+
+        List<Integer> listResults = _executor.invokeAll( Arrays.<Callable<Integer>> asList( ( ) -> 1, ( ) -> 2, ( ) -> 3 ) );
+
+        assertEquals( Arrays.asList( 1, 2, 3 ), listResults );
+    }
+
+    @Test
+    public void testInvokeAllFailure( )
+    {
+        _executor = new NotificationStoreExecutor( false, 4 );
+
+        List<Callable<Integer>> listCalls = new ArrayList<>( );
+        listCalls.add( ( ) -> 1 );
+        listCalls.add( ( ) -> {
+            throw new NotificationException( "failure" );
+        } );
+
+        try
+        {
+            _executor.invokeAll( listCalls );
+            fail( "the failure of a call must be thrown" );
+        }
+        catch( NotificationException e )
+        {
+            assertEquals( "failure", e.getMessage( ) );
+        }
+    }
+
+    @Test
+    public void testExecutorThread( ) throws Exception
+    {
+        _executor = new NotificationStoreExecutor( false, 2 );
+
+        assertFalse( _executor.isExecutorThread( ) );
+        assertTrue( _executor.submit( _executor::isExecutorThread ).get( 5, TimeUnit.SECONDS ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void testNestedInvokeAll( ) throws Exception
+    {
+        // each outer call holds one of the two threads : the inner calls must not wait for a thread
+        _executor = new NotificationStoreExecutor( false, 2 );
+
+        List<Callable<Integer>> listOuterCalls = new ArrayList<>( );
+        for ( int i = 0; i < 4; i++ )
+        {
+            int nOuter = i;
+            listOuterCalls.add( ( ) -> {
+                List<Integer> listInner = _executor.invokeAll( Arrays.<Callable<Integer>> asList( ( ) -> nOuter * 10, ( ) -> nOuter * 10 + 1 ) );
+                return listInner.get( 0 ) + listInner.get( 1 );
+            } );
+        }
+
+        assertEquals( Arrays.asList( 1, 21, 41, 61 ), _executor.invokeAll( listOuterCalls ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void testNestedCallWithDeadline( ) throws Exception
+    {
+        _executor = new NotificationStoreExecutor( false, 1 );
+
+        // the deadline is carried to the outer call, and the inner call runs inline with it
+        CompletableFuture<Long> timeout = CallDeadline.ofTimeout( 5000 )
+                .call( ( ) -> _executor.submit( ( ) -> _executor.submit( ( ) -> CallDeadline.current( ).getTimeout( ) ).get( ) ) );
+
+        assertEquals( Long.valueOf( 5000 ), timeout.get( ) );
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.notificationstore.v1.web.rs.service.NotificationStoreMock;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.ReferentialSnapshot.Part;
+
+/**
+ * Tests of the referential snapshot restored from the local file by NotificationStoreService
+ */
+public class NotificationStoreServiceSnapshotTest
+{
+    private static final long ONE_DAY = 24 * 3600 * 1000L;
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    private final CountDownLatch _releaseTransport = new CountDownLatch( 1 );
+    private final BlockingTransport _transport = new BlockingTransport( );
+    private NotificationStoreService _service;
+
+    @After
+    public void tearDown( )
+    {
+        _releaseTransport.countDown( );
+        if ( _service != null )
+        {
+            _service.shutdown( );
+        }
+    }
+
+    @Test( timeout = 10000 )
+    public void testOldSnapshotServedWithoutNetworkCall( ) throws IOException
+    {
+        _service = newService( writeOldSnapshot( ) );
+
+        // the background revalidation is blocked : the restored data must be served without waiting for it
+        List<DemandType> listDemandTypes = _service.getDemandTypes( );
+
+        assertEquals( 1, listDemandTypes.size( ) );
+        assertEquals( "Restored type", listDemandTypes.get( 0 ).getLabel( ) );
+        assertFalse( _transport._callers.contains( Thread.currentThread( ) ) );
+    }
+
+    @Test( timeout = 10000 )
+    public void testRevalidatedDataServedAfterRestore( ) throws IOException, InterruptedException
+    {
+        _service = newService( writeOldSnapshot( ) );
+        assertEquals( 1, _service.getDemandTypes( ).size( ) );
+
+        _releaseTransport.countDown( );
+
+        // the data loaded by the revalidation replaces the restored data
+        while ( _service.getDemandTypes( ).size( ) == 1 )
+        {
+            Thread.sleep( 10 );
+        }
+        assertFalse( _transport._callers.contains( Thread.currentThread( ) ) );
+    }
+
+    /**
+     * @return the path of a snapshot file with demand types loaded one day ago
+     * @throws IOException
+     */
+    private String writeOldSnapshot( ) throws IOException
+    {
+        DemandType demandType = new DemandType( );
+        demandType.setIdDemandType( 1 );
+        demandType.setLabel( "Restored type" );
+        demandType.setAppCode( "R01" );
+
+        List<DemandType> listDemandTypes = new ArrayList<>( Collections.singletonList( demandType ) );
+        IndexedReferential<DemandType> demandTypes = new IndexedReferential<>( listDemandTypes, DemandType::getIdDemandType,
+                type -> String.valueOf( type.getIdDemandType( ) ) );
+
+        String strPath = new File( _folder.getRoot( ), "referential.snapshot" ).getPath( );
+        new ReferentialSnapshotFile( strPath )
+                .save( ReferentialSnapshot.EMPTY.with( Part.DEMAND_TYPES, demandTypes, System.currentTimeMillis( ) - ONE_DAY, false ) );
+
+        return strPath;
+    }
+
+    /**
+     * @param strSnapshotFile
+     * @return a service with the default configuration (no background refresh, max age of 300 s) and the snapshot file
+     */
+    private NotificationStoreService newService( String strSnapshotFile )
+    {
+        NotificationStoreService service = new CachedNotificationStoreService( _transport );
+        service.setSnapshotFile( strSnapshotFile );
+
+        return service;
+    }
+
+    /**
+     * Service with the cache enabled, outside of a Lutece context
+     */
+    private static final class CachedNotificationStoreService extends NotificationStoreService
+    {
+        CachedNotificationStoreService( INotificationStoreTransportProvider transportProvider )
+        {
+            super( transportProvider );
+        }
+
+        @Override
+        public void initCache( )
+        {
+            // no cache service outside of a Lutece context
+        }
+
+        @Override
+        public boolean isCacheEnable( )
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Transport which records the threads loading the demand types, and blocks them until released
+     */
+    private final class BlockingTransport extends NotificationStoreMock
+    {
+        private final List<Thread> _callers = Collections.synchronizedList( new ArrayList<>( ) );
+
+        @Override
+        public List<DemandType> getDemandTypes( )
+        {
+            _callers.add( Thread.currentThread( ) );
+            try
+            {
+                _releaseTransport.await( 10, TimeUnit.SECONDS );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+
+            return super.getDemandTypes( );
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.notificationstore.v1.web.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.paris.lutece.plugins.grubusiness.business.demand.DemandType;
+import fr.paris.lutece.plugins.notificationstore.v1.web.service.ReferentialSnapshot.Part;
+
+/**
+ * ReferentialSnapshotFile tests
+ */
+public class ReferentialSnapshotFileTest
+{
+    private static final long LOADED_AT = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    @Test
+    public void testSaveAndLoad( ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), "referential.snapshot" );
+        ReferentialSnapshotFile snapshotFile = new ReferentialSnapshotFile( file.getPath( ) );
+
+        snapshotFile.save( getSnapshot( ) );
+        Map<Part, ReferentialSnapshot.Entry<Object>> mapEntries = snapshotFile.load( );
+
+        // only the loaded parts are stored
+        assertEquals( 1, mapEntries.size( ) );
+        ReferentialSnapshot.Entry<Object> entry = mapEntries.get( Part.DEMAND_TYPES );
+        assertEquals( LOADED_AT, entry.getLoadedAt( ) );
+        assertFalse( entry.isStale( ) );
+
+        @SuppressWarnings( "unchecked" )
+        List<DemandType> listDemandTypes = (List<DemandType>) entry.getValue( );
+        assertEquals( 2, listDemandTypes.size( ) );
+        assertEquals( 1, listDemandTypes.get( 0 ).getIdDemandType( ) );
+        assertEquals( "Type 1", listDemandTypes.get( 0 ).getLabel( ) );
+        assertEquals( "A01", listDemandTypes.get( 0 ).getAppCode( ) );
+        assertEquals( 2, listDemandTypes.get( 1 ).getIdDemandType( ) );
+
+        // no temporary file is left
+        assertFalse( new File( file.getPath( ) + ".tmp" ).exists( ) );
+    }
+
+    @Test
+    public void testLoadMissingFile( ) throws IOException
+    {
+        ReferentialSnapshotFile snapshotFile = new ReferentialSnapshotFile( new File( _folder.getRoot( ), "missing.snapshot" ).getPath( ) );
+
+        assertTrue( snapshotFile.load( ).isEmpty( ) );
+    }
+
+    @Test
+    public void testLoadInvalidFile( ) throws IOException
+    {
+        File file = _folder.newFile( "invalid.snapshot" );
+        Files.write( file.toPath( ), "not a snapshot file".getBytes( "UTF-8" ) );
+
+        assertLoadFails( new ReferentialSnapshotFile( file.getPath( ) ) );
+    }
+
+    @Test
+    public void testLoadTruncatedFile( ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), "truncated.snapshot" );
+        ReferentialSnapshotFile snapshotFile = new ReferentialSnapshotFile( file.getPath( ) );
+        snapshotFile.save( getSnapshot( ) );
+
+        try ( RandomAccessFile truncated = new RandomAccessFile( file, "rw" ) )
+        {
+            truncated.setLength( truncated.length( ) - 10 );
+        }
+
+        assertLoadFails( snapshotFile );
+    }
+
+    @Test
+    public void testLoadCorruptedPart( ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), "corrupted.snapshot" );
+        ReferentialSnapshotFile snapshotFile = new ReferentialSnapshotFile( file.getPath( ) );
+        snapshotFile.save( getSnapshot( ) );
+
+        // the json of the part starts after the header (magic, version, number of parts) and the part header (ordinal, loading time, length)
+        try ( RandomAccessFile corrupted = new RandomAccessFile( file, "rw" ) )
+        {
+            corrupted.seek( 12 + 1 + 8 + 4 );
+            corrupted.write( '}' );
+        }
+
+        assertLoadFails( snapshotFile );
+    }
+
+    /**
+     * @param snapshotFile
+     *            a file which can't be loaded
+     */
+    private static void assertLoadFails( ReferentialSnapshotFile snapshotFile )
+    {
+        try
+        {
+            snapshotFile.load( );
+            fail( "an invalid snapshot file must not be loaded" );
+        }
+        catch( IOException e )
+        {
+            // expected
+        }
+    }
+
+    /**
+     * @return a snapshot with the demand types loaded
+     */
+    private static ReferentialSnapshot getSnapshot( )
+    {
+        List<DemandType> listDemandTypes = new ArrayList<>( );
+        listDemandTypes.add( getDemandType( 1, "Type 1", "A01" ) );
+        listDemandTypes.add( getDemandType( 2, "Type 2", "A02" ) );
+
+        IndexedReferential<DemandType> demandTypes = new IndexedReferential<>( listDemandTypes, DemandType::getIdDemandType,
+                demandType -> String.valueOf( demandType.getIdDemandType( ) ) );
+
+        return ReferentialSnapshot.EMPTY.with( Part.DEMAND_TYPES, demandTypes, LOADED_AT, false );
+    }
+
+    /**
+     * @param nId
+     * @param strLabel
+     * @param strAppCode
+     * @return the demand type
+     */
+    private static DemandType getDemandType( int nId, String strLabel, String strAppCode )
+    {
+        DemandType demandType = new DemandType( );
+        demandType.setIdDemandType( nId );
+        demandType.setLabel( strLabel );
+        demandType.setAppCode( strAppCode );
+
+        return demandType;
+    }
+}